@@ -3,6 +3,8 @@ package org.csanchez.jenkins.plugins.kubernetes;
 import static java.util.stream.Collectors.joining;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -32,7 +34,15 @@ public class AllContainersRunningPodWatcher implements Watcher<Pod> {
     private final CountDownLatch latch = new CountDownLatch(1);
     private final AtomicReference<Pod> reference = new AtomicReference<>();
 
-    private Pod pod;
+    private volatile Pod pod;
+
+    private volatile boolean deleted;
+
+    private volatile boolean closed;
+
+    private final CompletableFuture<Pod> running = new CompletableFuture<>();
+
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
 
     private KubernetesClient client;
 
@@ -50,11 +60,19 @@ public class AllContainersRunningPodWatcher implements Watcher<Pod> {
     public void eventReceived(Action action, Pod pod) {
         LOGGER.log(Level.FINEST, "[{0}] {1}", new Object[]{action, pod.getMetadata().getName()});
         switch (action) {
+            case ADDED:
             case MODIFIED:
+                this.pod = pod;
                 updateState(pod);
                 break;
+            case DELETED:
+                deleted = true;
+                running.completeExceptionally(new IllegalStateException(String.format("Pod is no longer available: %s/%s",
+                        this.pod.getMetadata().getNamespace(), this.pod.getMetadata().getName())));
+                break;
             default:
         }
+        signalChange();
     }
 
     private void updateState(Pod pod) {
@@ -62,6 +80,15 @@ public class AllContainersRunningPodWatcher implements Watcher<Pod> {
             LOGGER.log(Level.FINE, "All containers are running for pod {0}", new Object[] {pod.getMetadata().getName()});
             reference.set(pod);
             latch.countDown();
+            running.complete(pod);
+        } else {
+            List<ContainerStatus> terminatedContainers = PodUtils.getTerminatedContainers(pod);
+            if (!terminatedContainers.isEmpty()) {
+                running.completeExceptionally(new IllegalStateException(String.format("Pod has terminated containers: %s/%s (%s)",
+                        pod.getMetadata().getNamespace(),
+                        pod.getMetadata().getName(),
+                        terminatedContainers.stream().map(ContainerStatus::getName).collect(joining(", ")))));
+            }
         }
     }
 
@@ -71,7 +98,63 @@ public class AllContainersRunningPodWatcher implements Watcher<Pod> {
 
     @Override
     public void onClose(KubernetesClientException cause) {
+        closed = true;
+        signalChange();
+    }
+
+    /**
+     * Runs the change listeners, for instance when the agent connected.
+     */
+    public void signalChange() {
+        changeListeners.forEach(Runnable::run);
+    }
+
+    /**
+     * Registers a callback run after each change of the pod and on {@link #signalChange()}, on the thread delivering
+     * the change.
+     *
+     * @param listener the callback, expected to return quickly
+     */
+    public void addChangeListener(@Nonnull Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Updates the state of the pod when it was fetched from the API server, for instance because the watch was closed.
+     *
+     * @param pod the pod, or {@code null} if it no longer exists
+     */
+    public void update(@CheckForNull Pod pod) {
+        if (pod == null) {
+            eventReceived(Action.DELETED, this.pod);
+        } else {
+            eventReceived(Action.MODIFIED, pod);
+        }
+    }
 
+    /**
+     * Completes once all containers are running, or exceptionally if the pod is deleted or a container terminated.
+     *
+     * @return the pod with all containers running
+     */
+    @Nonnull
+    public CompletableFuture<Pod> whenAllContainersRunning() {
+        return running;
+    }
+
+    /**
+     * @return true while pod changes are delivered by the watch this watcher is registered with.
+     */
+    public boolean isWatching() {
+        return !closed;
+    }
+
+    /**
+     * @return the last known state of the pod, or {@code null} if it was deleted.
+     */
+    @CheckForNull
+    public Pod getPod() {
+        return deleted ? null : pod;
     }
 
     /**
@@ -0,0 +1,160 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Cloud-wide accounting of the agent slots planned by {@link KubernetesCloud#provision} that are not backed by a pod yet.
+ * <p>
+ * A slot is reserved when the {@link hudson.slaves.NodeProvisioner.PlannedNode} is created, whatever label is being
+ * provisioned, and released once the pod shows up in the {@link PodCache}, when the launch fails or when the agent is
+ * terminated. Capacity checks then count existing pods plus reservations, so that concurrent provisioning rounds for
+ * different labels cannot overshoot {@link KubernetesCloud#getContainerCap()} or {@link PodTemplate#getInstanceCap()}.
+ * <p>
+ * Counters are updated with compare-and-set loops and are striped per template, no lock is held.
+ */
+public final class CapacityLedger {
+
+    private static final Logger LOGGER = Logger.getLogger(CapacityLedger.class.getName());
+
+    /**
+     * Reservations older than this many milliseconds are dropped, in case none of the release paths was reached.
+     */
+    private static final long RESERVATION_TIMEOUT = Long.getLong(CapacityLedger.class.getName() + ".reservationTimeout",
+            TimeUnit.MINUTES.toMillis(15));
+
+    /**
+     * Ledgers indexed by cloud name, so that they survive the cloud being reconfigured.
+     */
+    private static final Map<String, CapacityLedger> ledgers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final Map<String, AtomicInteger> reservedByTemplate = new ConcurrentHashMap<>();
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+
+    @VisibleForTesting
+    CapacityLedger() {
+    }
+
+    @Nonnull
+    public static CapacityLedger get(@Nonnull KubernetesCloud cloud) {
+        return get(cloud.name);
+    }
+
+    @Nonnull
+    public static CapacityLedger get(@Nonnull String cloudName) {
+        return ledgers.computeIfAbsent(cloudName, k -> new CapacityLedger());
+    }
+
+    /**
+     * @return the number of slots reserved across all templates of the cloud.
+     */
+    public int getReserved() {
+        return reserved.get();
+    }
+
+    /**
+     * @param template the pod template
+     * @return the number of slots reserved for pods matching the labels of the given template.
+     */
+    public int getReserved(@Nonnull PodTemplate template) {
+        AtomicInteger counter = reservedByTemplate.get(templateKey(template));
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Reserves a slot for the given agent, unless another provisioning round used up the available capacity.
+     *
+     * @param agentName the name of the planned agent
+     * @param template the template the agent is provisioned from
+     * @param globalAvailable the cloud-wide slots not used by existing pods
+     * @param templateAvailable the template slots not used by existing pods
+     * @return true if the slot was reserved
+     */
+    public boolean reserve(@Nonnull String agentName, @Nonnull PodTemplate template, int globalAvailable, int templateAvailable) {
+        if (!tryIncrement(reserved, globalAvailable)) {
+            return false;
+        }
+        String key = templateKey(template);
+        AtomicInteger templateReserved = reservedByTemplate.computeIfAbsent(key, k -> new AtomicInteger());
+        if (!tryIncrement(templateReserved, templateAvailable)) {
+            reserved.decrementAndGet();
+            return false;
+        }
+        if (reservations.putIfAbsent(agentName, new Reservation(key, System.currentTimeMillis())) != null) {
+            // already reserved
+            templateReserved.decrementAndGet();
+            reserved.decrementAndGet();
+        }
+        LOGGER.log(Level.FINEST, "Reserved slot for {0}", agentName);
+        return true;
+    }
+
+    /**
+     * Releases the slot reserved for the given agent, if any. Safe to call several times.
+     *
+     * @param agentName the name of the agent
+     */
+    public void release(@Nonnull String agentName) {
+        Reservation reservation = reservations.remove(agentName);
+        if (reservation != null) {
+            reserved.decrementAndGet();
+            AtomicInteger templateReserved = reservedByTemplate.get(reservation.templateKey);
+            if (templateReserved != null) {
+                templateReserved.decrementAndGet();
+            }
+            LOGGER.log(Level.FINEST, "Released slot for {0}", agentName);
+        }
+    }
+
+    /**
+     * Drops reservations that were never released.
+     */
+    public void expireReservations() {
+        expireReservationsOlderThan(System.currentTimeMillis() - RESERVATION_TIMEOUT);
+    }
+
+    @VisibleForTesting
+    void expireReservationsOlderThan(long timestamp) {
+        reservations.forEach((agentName, reservation) -> {
+            if (reservation.timestamp < timestamp) {
+                LOGGER.log(Level.FINE, "Dropping stale capacity reservation for {0}", agentName);
+                release(agentName);
+            }
+        });
+    }
+
+    private static boolean tryIncrement(AtomicInteger counter, int limit) {
+        while (true) {
+            int current = counter.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private static String templateKey(PodTemplate template) {
+        return template.getLabelsMap().get("jenkins/label-digest");
+    }
+
+    private static final class Reservation {
+        private final String templateKey;
+        private final long timestamp;
+
+        Reservation(String templateKey, long timestamp) {
+            this.templateKey = templateKey;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import hudson.model.Computer;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.dsl.LogWatch;
+import jenkins.util.Timer;
+
+/**
+ * The tail of the log of a container, as shown by {@link KubernetesComputer#doContainerLog}.
+ * <p>
+ * A single follow stream per container feeds a ring buffer of {@link #BUFFER_SIZE} bytes, from which viewers read
+ * what was appended since the offset they last saw. The stream is closed once nobody asked for the log during
+ * {@link #IDLE_TIMEOUT} milliseconds, and at most {@link #MAX_BUFFERS} logs are followed at once.
+ */
+final class ContainerLogBuffer {
+
+    private static final Logger LOGGER = Logger.getLogger(ContainerLogBuffer.class.getName());
+
+    /**
+     * Maximum number of bytes of log kept per container.
+     */
+    private static final int BUFFER_SIZE = Integer.getInteger(ContainerLogBuffer.class.getName() + ".bufferSize", 1024 * 1024);
+
+    /**
+     * Number of lines of existing log to start from.
+     */
+    private static final int TAILING_LINES = Integer.getInteger(ContainerLogBuffer.class.getName() + ".tailingLines", 1000);
+
+    /**
+     * Time in milliseconds without viewers after which the log stream is closed.
+     */
+    private static final long IDLE_TIMEOUT = Long.getLong(ContainerLogBuffer.class.getName() + ".idleTimeout",
+            TimeUnit.SECONDS.toMillis(60));
+
+    /**
+     * Maximum number of containers whose log is followed at once. The least recently viewed log is closed beyond it.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tests")
+    @VisibleForTesting
+    static int MAX_BUFFERS = Integer.getInteger(ContainerLogBuffer.class.getName() + ".maxBuffers", 50);
+
+    /**
+     * Maximum number of bytes of log kept for all containers.
+     */
+    private static final long MAX_TOTAL_SIZE = Long.getLong(ContainerLogBuffer.class.getName() + ".maxTotalSize",
+            64L * 1024 * 1024);
+
+    /**
+     * Buffers by namespace, pod and container.
+     */
+    private static final Map<String, ContainerLogBuffer> buffers = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final byte[] buffer;
+    /**
+     * Total number of bytes appended, the offset viewers poll from.
+     */
+    private long written;
+    private volatile boolean completed;
+    private volatile long lastAccess = System.currentTimeMillis();
+    @CheckForNull
+    private volatile LogWatch watch;
+    @CheckForNull
+    private volatile ScheduledFuture<?> idleCheck;
+
+    @VisibleForTesting
+    ContainerLogBuffer(String key, int size) {
+        this.key = key;
+        this.buffer = new byte[size];
+    }
+
+    /**
+     * Returns the buffer of the given container, starting to follow its log if needed. A buffer whose stream ended,
+     * as the container completed or restarted, is replaced by a new one following the log again.
+     */
+    @Nonnull
+    static ContainerLogBuffer get(@Nonnull KubernetesClient client, @Nonnull String namespace, @Nonnull String podName,
+            @Nonnull String containerName) {
+        String key = namespace + "/" + podName + "/" + containerName;
+        ContainerLogBuffer created = new ContainerLogBuffer(key, BUFFER_SIZE);
+        ContainerLogBuffer current = buffers.compute(key, (k, existing) -> {
+            if (existing != null && !existing.isCompleted()) {
+                existing.lastAccess = System.currentTimeMillis();
+                return existing;
+            }
+            if (existing != null) {
+                existing.close();
+            }
+            return created;
+        });
+        if (current == created) {
+            created.start(client, namespace, podName, containerName);
+            evict();
+        }
+        return current;
+    }
+
+    /**
+     * Closes the least recently viewed logs while more than {@link #MAX_BUFFERS} logs, or {@link #MAX_TOTAL_SIZE}
+     * bytes, are kept.
+     */
+    private static void evict() {
+        long limit = Math.max(1, Math.min(MAX_BUFFERS, MAX_TOTAL_SIZE / BUFFER_SIZE));
+        while (buffers.size() > limit) {
+            ContainerLogBuffer oldest = null;
+            for (ContainerLogBuffer b : buffers.values()) {
+                if (oldest == null || b.lastAccess < oldest.lastAccess) {
+                    oldest = b;
+                }
+            }
+            if (oldest != null && buffers.remove(oldest.key, oldest)) {
+                LOGGER.log(Level.FINE, "Too many container logs are followed, closing {0}", oldest.key);
+                oldest.close();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static void closeAll() {
+        for (ContainerLogBuffer b : buffers.values()) {
+            if (buffers.remove(b.key, b)) {
+                b.close();
+            }
+        }
+    }
+
+    private void start(KubernetesClient client, String namespace, String podName, String containerName) {
+        idleCheck = Timer.get().scheduleWithFixedDelay(this::closeIfIdle, IDLE_TIMEOUT, IDLE_TIMEOUT / 4, TimeUnit.MILLISECONDS);
+        try {
+            LogWatch w = client.pods().inNamespace(namespace).withName(podName).inContainer(containerName)
+                    .tailingLines(TAILING_LINES).watchLog();
+            watch = w;
+            Computer.threadPoolForRemoting.submit(() -> pump(w.getOutput()));
+            LOGGER.log(Level.FINE, "Following log of {0}", key);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Failed to follow log of " + key, e);
+            completed = true;
+        }
+    }
+
+    private void pump(InputStream in) {
+        byte[] chunk = new byte[8192];
+        try {
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                append(chunk, 0, n);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Stopped following log of " + key, e);
+        } finally {
+            completed = true;
+        }
+    }
+
+    synchronized void append(byte[] b, int off, int len) {
+        if (len >= buffer.length) {
+            // only the end fits
+            off += len - buffer.length;
+            written += len - buffer.length;
+            len = buffer.length;
+        }
+        int pos = (int) (written % buffer.length);
+        int first = Math.min(len, buffer.length - pos);
+        System.arraycopy(b, off, buffer, pos, first);
+        System.arraycopy(b, off + first, buffer, 0, len - first);
+        written += len;
+    }
+
+    /**
+     * @return the total number of bytes appended so far
+     */
+    synchronized long getWritten() {
+        return written;
+    }
+
+    /**
+     * @return false while the log may still grow
+     */
+    boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Reads what was appended since the given offset, or as much of it as is still buffered. An offset beyond what
+     * was appended, as seen by a viewer of a previous stream of the same container, starts again from the oldest
+     * buffered byte.
+     *
+     * @param start the offset the viewer already has the log up to
+     */
+    @Nonnull
+    Chunk read(long start) {
+        lastAccess = System.currentTimeMillis();
+        // checked first, so that the last bytes are part of the chunk telling the log is complete
+        boolean complete = completed;
+        synchronized (this) {
+            long oldest = Math.max(0, written - buffer.length);
+            long from = start > written || start < oldest ? oldest : start;
+            int len = (int) (written - from);
+            byte[] bytes = new byte[len];
+            int pos = (int) (from % buffer.length);
+            int first = Math.min(len, buffer.length - pos);
+            System.arraycopy(buffer, pos, bytes, 0, first);
+            System.arraycopy(buffer, 0, bytes, first, len - first);
+            return new Chunk(bytes, written, complete);
+        }
+    }
+
+    /**
+     * A part of the log.
+     */
+    static final class Chunk {
+        final byte[] bytes;
+        /**
+         * Offset of the end of this chunk in the log, to poll from next.
+         */
+        final long end;
+        final boolean complete;
+
+        Chunk(byte[] bytes, long end, boolean complete) {
+            this.bytes = bytes;
+            this.end = end;
+            this.complete = complete;
+        }
+    }
+
+    private void closeIfIdle() {
+        if (System.currentTimeMillis() - lastAccess > IDLE_TIMEOUT && buffers.remove(key, this)) {
+            LOGGER.log(Level.FINE, "Nobody is watching the log of {0}, closing it", key);
+            close();
+        }
+    }
+
+    void close() {
+        completed = true;
+        if (idleCheck != null) {
+            idleCheck.cancel(false);
+        }
+        LogWatch w = watch;
+        if (w != null) {
+            w.close();
+        }
+    }
+}
@@ -2,12 +2,18 @@ package org.csanchez.jenkins.plugins.kubernetes;
 
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.CheckForNull;
+
 import hudson.model.PeriodicWork;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.HttpClientAware;
 import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
@@ -16,8 +22,6 @@ import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 import com.google.common.base.Objects;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 
 import hudson.Extension;
 import hudson.XmlFile;
@@ -25,47 +29,130 @@ import hudson.model.Saveable;
 import hudson.model.listeners.SaveableListener;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import jenkins.model.Jenkins;
+import jenkins.util.Timer;
 
 /**
  * Manages the Kubernetes client creation per cloud
+ * <p>
+ * A client is kept for as long as the configuration of its cloud does not change, so that its connection pool and
+ * TLS sessions are reused. Credentials are resolved again every {@link #CACHE_EXPIRATION} seconds and the new token or
+ * password is set on the configuration of the existing client, which reads it for every request. The client is only
+ * replaced if the connection settings themselves changed, such as client certificates, and replaced clients are
+ * closed once the requests in flight had time to complete.
  */
 public class KubernetesClientProvider {
 
     private static final Logger LOGGER = Logger.getLogger(KubernetesClientProvider.class.getName());
 
     /**
-     * Client expiration in seconds.
+     * Credentials refresh period in seconds.
      *
-     * Some providers such as Amazon EKS use a token with 15 minutes expiration, so expire clients after 10 minutes.
+     * Some providers such as Amazon EKS use a token with 15 minutes expiration, so refresh credentials after 10 minutes.
      */
     private static final long CACHE_EXPIRATION = Long.getLong(
             KubernetesClientProvider.class.getPackage().getName() + ".clients.cacheExpiration", TimeUnit.MINUTES.toSeconds(10));
 
-    private static final Cache<String, Client> clients = CacheBuilder.newBuilder()
-            .expireAfterWrite(CACHE_EXPIRATION, TimeUnit.SECONDS)
-            .removalListener(rl -> {
-                Client client = (Client) rl.getValue();
-                if (client != null) {
-                    LOGGER.log(Level.FINE, () -> "Expiring Kubernetes client " + rl.getKey() + " " + client.client);
-                }
-            })
-            .build();
+    /**
+     * Time in seconds a replaced client is kept open for the requests in flight.
+     */
+    private static final long CLOSE_DELAY = Long.getLong(
+            KubernetesClientProvider.class.getPackage().getName() + ".clients.closeDelay", TimeUnit.MINUTES.toSeconds(1));
+
+    // Refresh credentials in the background this long before they would be refreshed on use
+    private static final long REFRESH_AHEAD = TimeUnit.MINUTES.toMillis(1);
+
+    private static final Map<String, Client> clients = new ConcurrentHashMap<>();
 
     private KubernetesClientProvider() {
     }
 
     static KubernetesClient createClient(KubernetesCloud cloud) throws KubernetesAuthException, IOException {
         String displayName = cloud.getDisplayName();
-        final Client c = clients.getIfPresent(displayName);
-        if (c == null) {
-            KubernetesClient client = new KubernetesFactoryAdapter(cloud.getServerUrl(), cloud.getNamespace(),
-                    cloud.getServerCertificate(), cloud.getCredentialsId(), cloud.isSkipTlsVerify(),
-                    cloud.getConnectTimeout(), cloud.getReadTimeout(), cloud.getMaxRequestsPerHost(), cloud.isUseJenkinsProxy()).createClient();
-            clients.put(displayName, new Client(getValidity(cloud), client));
+        Client c = clients.get(displayName);
+        if (c != null && c.getValidity() == getValidity(cloud)) {
+            if (c.getAge() >= TimeUnit.SECONDS.toMillis(CACHE_EXPIRATION)) {
+                c = refresh(cloud, c);
+            }
+            return c.getClient();
+        }
+        synchronized (KubernetesClientProvider.class) {
+            c = clients.get(displayName);
+            if (c != null && c.getValidity() == getValidity(cloud)) {
+                return c.getClient();
+            }
+            KubernetesClient client = new DefaultKubernetesClient(adapter(cloud).createConfig());
+            replace(displayName, new Client(getValidity(cloud), client));
             LOGGER.log(Level.FINE, "Created new Kubernetes client: {0} {1}", new Object[] { displayName, client });
             return client;
         }
-        return c.getClient();
+    }
+
+    private static KubernetesFactoryAdapter adapter(KubernetesCloud cloud) throws KubernetesAuthException {
+        return new KubernetesFactoryAdapter(cloud.getServerUrl(), cloud.getNamespace(),
+                cloud.getServerCertificate(), cloud.getCredentialsId(), cloud.isSkipTlsVerify(),
+                cloud.getConnectTimeout(), cloud.getReadTimeout(), cloud.getMaxRequestsPerHost(), cloud.isUseJenkinsProxy());
+    }
+
+    /**
+     * Resolves the credentials of the cloud again and updates the given client with them, or replaces it if the
+     * connection settings changed.
+     *
+     * @return the client to use from now on
+     */
+    private static Client refresh(KubernetesCloud cloud, Client c) throws KubernetesAuthException {
+        synchronized (c) {
+            if (c.getAge() < TimeUnit.SECONDS.toMillis(CACHE_EXPIRATION) - REFRESH_AHEAD || c.replaced) {
+                // refreshed concurrently
+                Client current = clients.get(cloud.getDisplayName());
+                return current != null ? current : c;
+            }
+            Config fresh = adapter(cloud).createConfig();
+            Config current = c.getClient().getConfiguration();
+            if (isSameConnection(current, fresh)) {
+                // read by the client for every request
+                current.setOauthToken(fresh.getOauthToken());
+                current.setUsername(fresh.getUsername());
+                current.setPassword(fresh.getPassword());
+                c.refreshed();
+                LOGGER.log(Level.FINE, "Refreshed credentials of Kubernetes client {0}", cloud.getDisplayName());
+                return c;
+            }
+            Client replacement = new Client(c.getValidity(), new DefaultKubernetesClient(fresh));
+            replace(cloud.getDisplayName(), replacement);
+            LOGGER.log(Level.FINE, "Connection settings of Kubernetes client {0} changed, replaced it", cloud.getDisplayName());
+            return replacement;
+        }
+    }
+
+    static boolean isSameConnection(Config a, Config b) {
+        return Objects.equal(a.getMasterUrl(), b.getMasterUrl())
+                && a.isTrustCerts() == b.isTrustCerts()
+                && Objects.equal(a.getCaCertData(), b.getCaCertData())
+                && Objects.equal(a.getCaCertFile(), b.getCaCertFile())
+                && Objects.equal(a.getClientCertData(), b.getClientCertData())
+                && Objects.equal(a.getClientCertFile(), b.getClientCertFile())
+                && Objects.equal(a.getClientKeyData(), b.getClientKeyData())
+                && Objects.equal(a.getClientKeyFile(), b.getClientKeyFile())
+                && Objects.equal(a.getClientKeyPassphrase(), b.getClientKeyPassphrase())
+                && Objects.equal(a.getHttpProxy(), b.getHttpProxy())
+                && Objects.equal(a.getHttpsProxy(), b.getHttpsProxy())
+                && Objects.equal(a.getProxyUsername(), b.getProxyUsername())
+                && Objects.equal(a.getProxyPassword(), b.getProxyPassword());
+    }
+
+    private static void replace(String displayName, @CheckForNull Client replacement) {
+        Client old = replacement == null ? clients.remove(displayName) : clients.put(displayName, replacement);
+        if (old != null && old != replacement) {
+            old.replaced = true;
+            LOGGER.log(Level.FINE, () -> "Closing replaced Kubernetes client " + displayName + " " + old.client + " in " + CLOSE_DELAY + "s");
+            Timer.get().schedule(() -> {
+                try {
+                    old.client.close();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.FINE, "Failed to close Kubernetes client " + displayName, e);
+                }
+            }, CLOSE_DELAY, TimeUnit.SECONDS);
+        }
     }
 
     private static int getValidity(KubernetesCloud cloud) {
@@ -77,6 +164,8 @@ public class KubernetesClientProvider {
     private static class Client {
         private final KubernetesClient client;
         private final int validity;
+        private volatile long refreshedAt = System.currentTimeMillis();
+        private volatile boolean replaced;
 
         public Client(int validity, KubernetesClient client) {
             this.client = client;
@@ -90,6 +179,14 @@ public class KubernetesClientProvider {
         public int getValidity() {
             return validity;
         }
+
+        long getAge() {
+            return System.currentTimeMillis() - refreshedAt;
+        }
+
+        void refreshed() {
+            refreshedAt = System.currentTimeMillis();
+        }
     }
 
     private static volatile int runningCallsCount;
@@ -105,7 +202,7 @@ public class KubernetesClientProvider {
 
     @Restricted(NoExternalUse.class) // testing only
     public static void invalidate(String displayName) {
-        clients.invalidate(displayName);
+        replace(displayName, null);
     }
 
     @Extension
@@ -114,17 +211,17 @@ public class KubernetesClientProvider {
         public void onChange(Saveable o, XmlFile file) {
             if (o instanceof Jenkins) {
                 Jenkins jenkins = (Jenkins) o;
-                Set<String> cloudDisplayNames = new HashSet<>(clients.asMap().keySet());
+                Set<String> cloudDisplayNames = new HashSet<>(clients.keySet());
                 for (KubernetesCloud cloud : jenkins.clouds.getAll(KubernetesCloud.class)) {
                     String displayName = cloud.getDisplayName();
-                    Client client = clients.getIfPresent(displayName);
+                    Client client = clients.get(displayName);
                     if (client == null || client.getValidity() == getValidity(cloud)) {
                         cloudDisplayNames.remove(displayName);
                     }
                 }
                 // Remove missing / invalid clients
                 for (String displayName : cloudDisplayNames) {
-                    LOGGER.log(Level.INFO, () -> "Invalidating Kubernetes client: " + displayName + clients.getIfPresent(displayName));
+                    LOGGER.log(Level.INFO, () -> "Invalidating Kubernetes client: " + displayName + clients.get(displayName));
                     invalidate(displayName);
                 }
             }
@@ -132,6 +229,37 @@ public class KubernetesClientProvider {
         }
     }
 
+    /**
+     * Refreshes credentials before they are due, so that callers do not wait for them.
+     */
+    @Extension
+    public static class RefreshCredentials extends PeriodicWork {
+
+        @Override
+        public long getRecurrencePeriod() {
+            return REFRESH_AHEAD;
+        }
+
+        @Override
+        protected void doRun() {
+            Jenkins jenkins = Jenkins.getInstanceOrNull();
+            if (jenkins == null) {
+                return;
+            }
+            for (KubernetesCloud cloud : jenkins.clouds.getAll(KubernetesCloud.class)) {
+                Client client = clients.get(cloud.getDisplayName());
+                if (client != null && client.getValidity() == getValidity(cloud)
+                        && client.getAge() >= TimeUnit.SECONDS.toMillis(CACHE_EXPIRATION) - REFRESH_AHEAD) {
+                    try {
+                        refresh(cloud, client);
+                    } catch (KubernetesAuthException | RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Failed to refresh credentials of Kubernetes client " + cloud.getDisplayName(), e);
+                    }
+                }
+            }
+        }
+    }
+
     @Extension
     public static class UpdateConnectionCount extends PeriodicWork {
 
@@ -144,7 +272,7 @@ public class KubernetesClientProvider {
         protected void doRun() {
             int runningCallsCount = 0;
             int queuedCallsCount = 0;
-            for (Client client : KubernetesClientProvider.clients.asMap().values()) {
+            for (Client client : KubernetesClientProvider.clients.values()) {
                 KubernetesClient kClient = client.getClient();
                 if (kClient instanceof HttpClientAware) {
                     OkHttpClient httpClient = ((HttpClientAware) kClient).getHttpClient();
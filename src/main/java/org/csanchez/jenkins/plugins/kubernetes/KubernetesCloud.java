@@ -142,6 +142,9 @@ public class KubernetesCloud extends Cloud {
     @CheckForNull
     private PodRetention podRetention = PodRetention.getKubernetesCloudDefault();
 
+    @CheckForNull
+    private transient volatile PodTemplateResolutionCache templateResolutionCache;
+
     @DataBoundConstructor
     public KubernetesCloud(String name) {
         super(name);
@@ -231,6 +234,7 @@ public class KubernetesCloud extends Cloud {
     @DataBoundSetter
     public void setTemplates(@Nonnull List<PodTemplate> templates) {
         this.templates = new ArrayList<>(templates);
+        PodTemplateResolutionCache.invalidate();
     }
 
     public String getServerUrl() {
@@ -540,26 +544,39 @@ public class KubernetesCloud extends Cloud {
                             " launching: {4}",
                     new Object[] {label, toBeProvisioned, currentExecutorsCount, plannedCapacity, launchingExecutorsCount});
             List<NodeProvisioner.PlannedNode> plannedNodes = new ArrayList<>();
-            List<Pod> pods = getPodsWithLabels(namespace, getPodLabelsMap());
+            PodLabelIndex pods = getPodsWithLabels(namespace, getPodLabelsMap());
             if (pods != null) {
-                // Count planned and executors not yet launching (e.g. everything that is not in kubernetes yet)
-                int plannedCount = plannedCapacity + currentExecutorsCount - launchingExecutorsCount;
-                int remainingGlobalSlots = getRemainingGlobalSlots(pods, plannedCount);
+                // Count agents planned by any provisioning round of this cloud and not in kubernetes yet
+                CapacityLedger ledger = CapacityLedger.get(this);
+                ledger.expireReservations();
+                int globalAvailable = getRemainingGlobalSlots(pods, 0);
+                int remainingGlobalSlots = Math.max(0, globalAvailable - ledger.getReserved());
                 if (remainingGlobalSlots > 0) {
                     LOGGER.fine(() -> "Global slots left for " + name + ": " + remainingGlobalSlots);
                     for (PodTemplate podTemplate : getTemplatesFor(label)) {
                         LOGGER.log(Level.FINE, "Template for label \"{0}\": {1}", new Object[]{label, podTemplate.getName()});
                         // check overall concurrency limit using the default label(s) on all templates
-                        int remainingPodTemplateSlots = getRemainingPodTemplateSlots(podTemplate, pods, plannedCount);
+                        int templateAvailable = getRemainingPodTemplateSlots(podTemplate, pods, 0);
+                        int remainingPodTemplateSlots = Math.max(0, templateAvailable - ledger.getReserved(podTemplate));
                         LOGGER.log(remainingPodTemplateSlots > 0 ? Level.FINE : Level.INFO, "Slots left for template \"{0}\" in \"{1}\": {2}", new Object[]{podTemplate.getName(), name, remainingPodTemplateSlots});
                         int provisioningLimit = Math.min(remainingGlobalSlots, remainingPodTemplateSlots);
                         while (plannedNodes.size() < Math.min(provisioningLimit, toBeProvisioned)) {
-                            plannedNodes.add(PlannedNodeBuilderFactory.createInstance().cloud(this).template(podTemplate).label(label).build());
+                            NodeProvisioner.PlannedNode plannedNode = PlannedNodeBuilderFactory.createInstance().cloud(this).template(podTemplate).label(label).build();
+                            if (!plannedNode.displayName.isEmpty() && !ledger.reserve(plannedNode.displayName, podTemplate, globalAvailable, templateAvailable)) {
+                                // Slots were taken by a concurrent provisioning round for another label
+                                LOGGER.log(Level.FINE, "No slot left to reserve for template \"{0}\" in \"{1}\"", new Object[]{podTemplate.getName(), name});
+                                break;
+                            }
+                            plannedNodes.add(plannedNode);
                         }
                         if (!plannedNodes.isEmpty()) {
                             // Return early when a matching template was found and nodes were planned
                             LOGGER.log(Level.FINEST, "Planned {0} Kubernetes agents with template \"{1}\"", new Object[]{plannedNodes.size(), podTemplate.getName()});
                             Metrics.metricRegistry().counter(MetricNames.PROVISION_NODES).inc(plannedNodes.size());
+                            if (podTemplate.getWarmPoolSize() > 0) {
+                                // Demand was not covered by the idle agents of the warm pool
+                                Metrics.metricRegistry().counter(MetricNames.WARM_POOL_MISS).inc(plannedNodes.size());
+                            }
                             if (plannedNodes.size() == provisioningLimit && plannedNodes.size() < toBeProvisioned) {
                                 Metrics.metricRegistry().counter(MetricNames.REACHED_POD_CAP).inc();
                             }
@@ -596,31 +613,33 @@ public class KubernetesCloud extends Cloud {
         if (label != null) {
             return label.getNodes();
         } else {
-            return Jenkins.get().getNodes().stream()
+            // Only Kubernetes agents are counted
+            return KubernetesSlaveIndex.getNodes().stream()
                     .filter(n -> n.getLabelString() == null)
                     .collect(Collectors.toSet());
         }
     }
 
     @VisibleForTesting
-    int getRemainingPodTemplateSlots(PodTemplate template, List<Pod> pods, int plannedCount) {
-        List<Pod> filteredPodList = pods.stream()
-                .filter(pod -> pod.getMetadata().getLabels().entrySet().containsAll(template.getLabelsMap().entrySet()))
-                .collect(Collectors.toList());
-        return Math.max(0, template.getInstanceCap() - filteredPodList.size() - plannedCount);
+    int getRemainingPodTemplateSlots(PodTemplate template, PodLabelIndex pods, int plannedCount) {
+        return Math.max(0, template.getInstanceCap() - pods.count(template) - plannedCount);
     }
 
     @VisibleForTesting
-    int getRemainingGlobalSlots(List<Pod> pods, int plannedCount) {
-        // FIXME plannedCount only includes current requested label
-        return Math.max(0, getContainerCap() - pods.size() - plannedCount);
+    int getRemainingGlobalSlots(PodLabelIndex pods, int plannedCount) {
+        return Math.max(0, getContainerCap() - pods.count() - plannedCount);
     }
 
     /**
-     * Query for running or pending pods
+     * Query for running or pending pods.
+     * Served from the {@link PodCache} of this cloud when it has synced, otherwise listed from the API server.
      */
     @CheckForNull
-    private List<Pod> getPodsWithLabels(String namespace, Map<String, String> labels) throws IOException, KubernetesAuthException {
+    private PodLabelIndex getPodsWithLabels(String namespace, Map<String, String> labels) throws IOException, KubernetesAuthException {
+        PodLabelIndex cachedPods = PodCache.getActivePodIndex(this);
+        if (cachedPods != null) {
+            return cachedPods;
+        }
         KubernetesClient client = connect();
         PodList podList = client.pods()
                 .inNamespace(StringUtils.defaultIfEmpty(namespace,client.getNamespace()))
@@ -628,13 +647,51 @@ public class KubernetesCloud extends Cloud {
                 .list();
         // JENKINS-53370 check for nulls
         if (podList != null && podList.getItems() != null) {
-            return podList.getItems().stream() //
-                    .filter(x -> x.getStatus().getPhase().toLowerCase().matches("(running|pending)"))
-                    .collect(Collectors.toList());
+            return PodLabelIndex.of(podList.getItems().stream() //
+                    .filter(KubernetesCloud::isRunningOrPending)
+                    .collect(Collectors.toList()));
         }
         return null;
     }
 
+    /**
+     * Creates agents ahead of demand to refill the warm pool of the given template, within the remaining capacity of
+     * the cloud and of the template. The created agents are not added to Jenkins.
+     *
+     * @param podTemplate the template to create agents from
+     * @param count the number of agents wanted
+     * @return the agents for which a slot could be reserved, possibly fewer than requested
+     */
+    @Nonnull
+    List<KubernetesSlave> createWarmPoolAgents(@Nonnull PodTemplate podTemplate, int count) throws IOException, KubernetesAuthException, Descriptor.FormException {
+        List<KubernetesSlave> agents = new ArrayList<>();
+        PodLabelIndex pods = getPodsWithLabels(namespace, getPodLabelsMap());
+        if (pods == null) {
+            return agents;
+        }
+        CapacityLedger ledger = CapacityLedger.get(this);
+        ledger.expireReservations();
+        int globalAvailable = getRemainingGlobalSlots(pods, 0);
+        int templateAvailable = getRemainingPodTemplateSlots(podTemplate, pods, 0);
+        while (agents.size() < count) {
+            KubernetesSlave agent = KubernetesSlave.builder()
+                    .podTemplate(getUnwrappedTemplate(podTemplate))
+                    .cloud(this)
+                    .build();
+            if (!ledger.reserve(agent.getNodeName(), podTemplate, globalAvailable, templateAvailable)) {
+                LOGGER.log(Level.FINE, "No slot left to refill the warm pool of template \"{0}\" in \"{1}\"", new Object[]{podTemplate.getName(), name});
+                break;
+            }
+            agents.add(agent);
+        }
+        return agents;
+    }
+
+    static boolean isRunningOrPending(Pod pod) {
+        return pod.getStatus() != null && pod.getStatus().getPhase() != null
+                && pod.getStatus().getPhase().toLowerCase().matches("(running|pending)");
+    }
+
     @Override
     public boolean canProvision(@NonNull Cloud.CloudState state) {
         return getTemplate(state.getLabel()) != null;
@@ -646,7 +703,7 @@ public class KubernetesCloud extends Cloud {
      * @return the template
      */
     public PodTemplate getTemplate(@CheckForNull Label label) {
-        return PodTemplateUtils.getTemplateByLabel(label, getAllTemplates());
+        return getTemplateResolutionCache().getTemplate(label, l -> PodTemplateUtils.getTemplateByLabel(l, getAllTemplates()));
     }
 
     @CheckForNull
@@ -680,7 +737,17 @@ public class KubernetesCloud extends Cloud {
      * @return list of matching templates
      */
     public List<PodTemplate> getTemplatesFor(@CheckForNull Label label) {
-        return PodTemplateFilter.applyAll(this, getAllTemplates(), label);
+        return new ArrayList<>(getTemplateResolutionCache().getTemplatesFor(label, l -> PodTemplateFilter.applyAll(this, getAllTemplates(), l)));
+    }
+
+    @Nonnull
+    private PodTemplateResolutionCache getTemplateResolutionCache() {
+        PodTemplateResolutionCache cache = templateResolutionCache;
+        if (cache == null || !cache.isCurrent()) {
+            cache = new PodTemplateResolutionCache();
+            templateResolutionCache = cache;
+        }
+        return cache;
     }
 
     /**
@@ -689,6 +756,7 @@ public class KubernetesCloud extends Cloud {
      */
     public void addTemplate(PodTemplate t) {
         this.templates.add(t);
+        PodTemplateResolutionCache.invalidate();
         // t.parent = this;
     }
 
@@ -699,6 +767,7 @@ public class KubernetesCloud extends Cloud {
      */
     public void removeTemplate(PodTemplate t) {
         this.templates.remove(t);
+        PodTemplateResolutionCache.invalidate();
     }
 
     /**
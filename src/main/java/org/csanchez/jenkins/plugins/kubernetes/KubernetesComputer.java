@@ -3,9 +3,13 @@ package org.csanchez.jenkins.plugins.kubernetes;
 import hudson.model.Computer;
 import hudson.model.Executor;
 import hudson.model.Queue;
+import hudson.model.TaskListener;
 import hudson.security.ACL;
+import hudson.security.ACLContext;
 import hudson.security.Permission;
 import hudson.slaves.AbstractCloudComputer;
+import hudson.slaves.ComputerListener;
+import hudson.slaves.OfflineCause;
 import io.fabric8.kubernetes.api.model.Container;
 import io.fabric8.kubernetes.api.model.Event;
 import io.fabric8.kubernetes.api.model.EventList;
@@ -20,25 +24,52 @@ import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.export.Exported;
-import org.kohsuke.stapler.framework.io.ByteBuffer;
-import org.kohsuke.stapler.framework.io.LargeText;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.CheckForNull;
+
 /**
  * @author Carlos Sanchez carlos@apache.org
  */
 public class KubernetesComputer extends AbstractCloudComputer<KubernetesSlave> {
     private static final Logger LOGGER = Logger.getLogger(KubernetesComputer.class.getName());
 
+    /**
+     * Time in milliseconds the pod and its events are reused for, when not known from a watch.
+     */
+    private static final long SNAPSHOT_TTL = Long.getLong(KubernetesComputer.class.getName() + ".snapshotTtl",
+            TimeUnit.SECONDS.toMillis(10));
+
+    /**
+     * Maximum number of events returned for a pod.
+     */
+    private static final int MAX_EVENTS = Integer.getInteger(KubernetesComputer.class.getName() + ".maxEvents", 100);
+
     private boolean launching;
 
+    private volatile Snapshot<Pod> podSnapshot;
+    private volatile Snapshot<List<Event>> eventsSnapshot;
+
+    /**
+     * Connection in progress through {@link KubernetesLauncher#launchAsync(KubernetesComputer, TaskListener)}, if any.
+     */
+    @CheckForNull
+    private volatile CompletableFuture<Void> connecting;
+
     public KubernetesComputer(KubernetesSlave slave) {
         super(slave);
     }
@@ -79,12 +110,10 @@ public class KubernetesComputer extends AbstractCloudComputer<KubernetesSlave> {
             return Collections.emptyList();
         }
 
-        KubernetesCloud cloud = slave.getKubernetesCloud();
-        KubernetesClient client = cloud.connect();
-
-        String namespace = StringUtils.defaultIfBlank(slave.getNamespace(), client.getNamespace());
-        Pod pod = client.pods().inNamespace(namespace).withName(getName()).get();
-
+        Pod pod = getPod(slave);
+        if (pod == null || pod.getSpec() == null) {
+            return Collections.emptyList();
+        }
         return pod.getSpec().getContainers();
     }
 
@@ -97,48 +126,171 @@ public class KubernetesComputer extends AbstractCloudComputer<KubernetesSlave> {
 
         KubernetesSlave slave = getNode();
         if(slave != null) {
-            KubernetesCloud cloud = slave.getKubernetesCloud();
-            KubernetesClient client = cloud.connect();
-
-            String namespace = StringUtils.defaultIfBlank(slave.getNamespace(), client.getNamespace());
-
-            Pod pod = client.pods().inNamespace(namespace).withName(getName()).get();
+            Pod pod = getPod(slave);
             if(pod != null) {
                 ObjectMeta podMeta = pod.getMetadata();
                 String podNamespace = podMeta.getNamespace();
 
+                List<Event> cached = PodEventInformer.getEvents(slave.getKubernetesCloud(), podNamespace, podMeta.getName(),
+                        podMeta.getUid());
+                if (cached != null) {
+                    return latest(cached);
+                }
+
+                Snapshot<List<Event>> snapshot = eventsSnapshot;
+                if (snapshot != null && snapshot.isFresh()) {
+                    return snapshot.value;
+                }
+
                 Map<String, String> fields = new HashMap<>();
                 fields.put("involvedObject.uid", podMeta.getUid());
                 fields.put("involvedObject.name", podMeta.getName());
                 fields.put("involvedObject.namespace", podNamespace);
 
+                KubernetesClient client = slave.getKubernetesCloud().connect();
                 EventList eventList = client.events().inNamespace(podNamespace).withFields(fields).list();
-                if(eventList != null) {
-                    return eventList.getItems();
-                }
+                List<Event> events = eventList != null ? latest(eventList.getItems()) : Collections.emptyList();
+                eventsSnapshot = new Snapshot<>(events);
+                return events;
             }
         }
 
         return Collections.emptyList();
     }
 
-    public void doContainerLog(@QueryParameter String containerId,
+    /**
+     * The pod of this agent, from the pod cache of the cloud if it is synced, otherwise from the API server at most
+     * once every {@link #SNAPSHOT_TTL} milliseconds.
+     */
+    @CheckForNull
+    private Pod getPod(KubernetesSlave slave) throws KubernetesAuthException, IOException {
+        KubernetesCloud cloud = slave.getKubernetesCloud();
+        Optional<Pod> cached = PodCache.getCachedPod(cloud, slave.getNamespace(), getName());
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+        Snapshot<Pod> snapshot = podSnapshot;
+        if (snapshot != null && snapshot.isFresh()) {
+            return snapshot.value;
+        }
+        KubernetesClient client = cloud.connect();
+        String namespace = StringUtils.defaultIfBlank(slave.getNamespace(), client.getNamespace());
+        Pod pod = client.pods().inNamespace(namespace).withName(getName()).get();
+        podSnapshot = new Snapshot<>(pod);
+        return pod;
+    }
+
+    /**
+     * @return the {@link #MAX_EVENTS} most recent of the given events, most recent last
+     */
+    private static List<Event> latest(List<Event> events) {
+        List<Event> sorted = new ArrayList<>(events);
+        // RFC 3339 timestamps in UTC sort lexicographically
+        sorted.sort(Comparator.comparing((Event e) -> StringUtils.defaultString(e.getLastTimestamp())));
+        return sorted.size() > MAX_EVENTS ? new ArrayList<>(sorted.subList(sorted.size() - MAX_EVENTS, sorted.size())) : sorted;
+    }
+
+    private static final class Snapshot<T> {
+        private final T value;
+        private final long timestamp = System.currentTimeMillis();
+
+        Snapshot(T value) {
+            this.value = value;
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() - timestamp < SNAPSHOT_TTL;
+        }
+    }
+
+    /**
+     * Serves the log of a container progressively, from the {@code start} offset the viewer already has.
+     */
+    public void doContainerLog(@QueryParameter String containerId, @QueryParameter long start,
                                StaplerRequest req, StaplerResponse rsp) throws KubernetesAuthException, IOException {
         Jenkins.get().checkPermission(Computer.EXTENDED_READ);
 
-        ByteBuffer outputStream = new ByteBuffer();
+        rsp.setContentType("text/plain;charset=UTF-8");
         KubernetesSlave slave = getNode();
-        if(slave != null) {
-            KubernetesCloud cloud = slave.getKubernetesCloud();
-            KubernetesClient client = cloud.connect();
+        if(slave == null || StringUtils.isBlank(containerId)) {
+            rsp.setHeader("X-Text-Size", "0");
+            return;
+        }
+        KubernetesCloud cloud = slave.getKubernetesCloud();
+        KubernetesClient client = cloud.connect();
+
+        String namespace = StringUtils.defaultIfBlank(slave.getNamespace(), client.getNamespace());
+
+        ContainerLogBuffer.Chunk chunk = ContainerLogBuffer.get(client, namespace, getName(), containerId).read(start);
+        rsp.setHeader("X-Text-Size", String.valueOf(chunk.end));
+        if (!chunk.complete) {
+            rsp.setHeader("X-More-Data", "true");
+        }
+        rsp.getOutputStream().write(chunk.bytes);
+    }
+
+    /**
+     * Agents launched by {@link KubernetesLauncher} are connected without holding a thread of
+     * {@link Computer#threadPoolForRemoting} while their pod starts: the returned future completes once the agent is
+     * connected.
+     */
+    @Override
+    protected synchronized Future<?> _connect(boolean forceReconnect) {
+        KubernetesSlave node = getNode();
+        if (getChannel() != null || node == null || !(node.getLauncher() instanceof KubernetesLauncher)) {
+            return super._connect(forceReconnect);
+        }
+        CompletableFuture<Void> connect = connecting;
+        if (connect != null && !connect.isDone()) {
+            return connect;
+        }
+        KubernetesLauncher launcher = (KubernetesLauncher) node.getLauncher();
+        TaskListener listener = getListener();
+        connect = CompletableFuture.runAsync(() -> preLaunch(listener), threadPoolForRemoting)
+                .thenCompose(v -> launcher.launchAsync(this, listener));
+        connect.whenComplete((v, t) -> {
+            if (t != null) {
+                launchFailed(listener);
+            }
+        });
+        connecting = connect;
+        return connect;
+    }
 
-            String namespace = StringUtils.defaultIfBlank(slave.getNamespace(), client.getNamespace());
+    private void preLaunch(TaskListener listener) {
+        try (ACLContext ctx = ACL.as(ACL.SYSTEM)) {
+            for (ComputerListener cl : ComputerListener.all()) {
+                cl.preLaunch(this, listener);
+            }
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+        offlineCause = null;
+    }
 
-            client.pods().inNamespace(namespace).withName(getName())
-                    .inContainer(containerId).tailingLines(20).watchLog(outputStream);
+    private void launchFailed(TaskListener listener) {
+        if (getChannel() != null) {
+            return;
         }
+        offlineCause = new OfflineCause.LaunchFailed();
+        try (ACLContext ctx = ACL.as(ACL.SYSTEM)) {
+            for (ComputerListener cl : ComputerListener.all()) {
+                try {
+                    cl.onLaunchFailure(this, listener);
+                } catch (IOException | InterruptedException | RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to notify " + cl + " of the launch failure of " + getName(), e);
+                }
+            }
+        }
+    }
 
-        new LargeText(outputStream, false).doProgressText(req, rsp);
+    @Override
+    public boolean isConnecting() {
+        CompletableFuture<Void> connect = connecting;
+        return super.isConnecting() || (isOffline() && connect != null && !connect.isDone());
     }
 
     @Override
@@ -87,6 +87,13 @@ public class KubernetesFactoryAdapter {
     }
 
     public KubernetesClient createClient() throws KubernetesAuthException {
+        return new DefaultKubernetesClient(createConfig());
+    }
+
+    /**
+     * @return the client configuration, with credentials resolved at the time of the call.
+     */
+    Config createConfig() throws KubernetesAuthException {
 
         ConfigBuilder builder;
 
@@ -145,7 +152,7 @@ public class KubernetesFactoryAdapter {
                 }
             }
         }
-        return new DefaultKubernetesClient(builder.build());
+        return builder.build();
     }
     private String getProxyPasswordDecrypted(ProxyConfiguration p) {
         String passwordEncrypted = p.getPassword();
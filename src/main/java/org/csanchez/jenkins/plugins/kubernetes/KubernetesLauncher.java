@@ -28,25 +28,44 @@ package org.csanchez.jenkins.plugins.kubernetes;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import javax.annotation.CheckForNull;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Functions;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.KubernetesClientTimeoutException;
 import jenkins.metrics.api.Metrics;
+import jenkins.security.ImpersonatingExecutorService;
+import jenkins.util.Timer;
 import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
 import org.kohsuke.stapler.DataBoundConstructor;
 
-import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 
+import hudson.Extension;
+import hudson.model.Computer;
 import hudson.model.TaskListener;
+import hudson.slaves.ComputerListener;
 import hudson.slaves.JNLPLauncher;
 import hudson.slaves.SlaveComputer;
 import io.fabric8.kubernetes.api.model.ContainerStatus;
@@ -62,17 +81,50 @@ import static java.util.logging.Level.WARNING;
 
 /**
  * Launches on Kubernetes the specified {@link KubernetesComputer} instance.
+ * <p>
+ * The pod is created and the agent awaited by a chain of stages ({@link Launch}): stages calling the Kubernetes API
+ * run on a bounded executor, while waiting for the containers to run and for the agent to connect is driven by the pod
+ * watch and {@link OnlineListener}, so that no thread is held while Kubernetes schedules the pod.
+ * {@link KubernetesComputer} connects through {@link #launchAsync(KubernetesComputer, TaskListener)}, which returns
+ * as soon as the launch is started.
  */
 public class KubernetesLauncher extends JNLPLauncher {
     // Report progress every 30 seconds
     private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toMillis(30L);
 
+    // Check the pod every second if its watch was closed
+    private static final long POLL_INTERVAL = TimeUnit.SECONDS.toMillis(1L);
+
+    /**
+     * Maximum number of threads calling the Kubernetes API to launch agents.
+     */
+    private static final int LAUNCH_THREADS = Integer.getInteger(KubernetesLauncher.class.getName() + ".launchThreads", 10);
+
+    private static final ExecutorService LAUNCH_EXECUTOR = createLaunchExecutor();
+
+    /**
+     * Number of times the creation of a pod is retried on conflicts, throttling and server errors.
+     */
+    private static final int CREATE_RETRIES = Integer.getInteger(KubernetesLauncher.class.getName() + ".createRetries", 3);
+
+    /**
+     * Base delay in milliseconds before retrying the creation of a pod, doubled on every attempt.
+     */
+    private static final long CREATE_RETRY_DELAY = Long.getLong(KubernetesLauncher.class.getName() + ".createRetryDelay",
+            TimeUnit.SECONDS.toMillis(1));
+
     @CheckForNull
-    private transient AllContainersRunningPodWatcher watcher;
+    private transient volatile AllContainersRunningPodWatcher watcher;
 
     private static final Logger LOGGER = Logger.getLogger(KubernetesLauncher.class.getName());
 
-    private boolean launched;
+    private volatile boolean launched;
+
+    /**
+     * Launch in progress, if any.
+     */
+    @CheckForNull
+    private transient volatile CompletableFuture<Void> launching;
 
     /**
      * Provisioning exception if any.
@@ -89,48 +141,208 @@ public class KubernetesLauncher extends JNLPLauncher {
         super();
     }
 
+    private static ExecutorService createLaunchExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(LAUNCH_THREADS, LAUNCH_THREADS, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamingThreadFactory(new DaemonThreadFactory(), "KubernetesLauncher"));
+        executor.allowCoreThreadTimeOut(true);
+        return new ImpersonatingExecutorService(executor, ACL.SYSTEM);
+    }
+
+    /**
+     * @return true once the agent was launched, its pod having been created and the agent connected.
+     */
+    public boolean isLaunched() {
+        return launched;
+    }
+
     @Override
     public boolean isLaunchSupported() {
-        return !launched;
+        return !launched && launching == null;
     }
 
+    /**
+     * Starts the launch of the agent and returns without waiting for it: failures are reported to the listener and
+     * the node is terminated once the launch fails.
+     * {@link KubernetesComputer} connects through {@link #launchAsync(KubernetesComputer, TaskListener)} instead, to be
+     * told when the agent is connected.
+     */
     @Override
-    @SuppressFBWarnings(value = "SWL_SLEEP_WITH_LOCK_HELD", justification = "This is fine")
-    public synchronized void launch(SlaveComputer computer, TaskListener listener) {
+    public void launch(SlaveComputer computer, TaskListener listener) {
         if (!(computer instanceof KubernetesComputer)) {
             throw new IllegalArgumentException("This Launcher can be used only with KubernetesComputer");
         }
-        KubernetesComputer kubernetesComputer = (KubernetesComputer) computer;
+        launchAsync((KubernetesComputer) computer, listener);
+    }
+
+    /**
+     * Starts the launch of the agent, unless it is already launched or being launched.
+     *
+     * @return completed once the agent is connected, or exceptionally if it could not be launched
+     */
+    CompletableFuture<Void> launchAsync(KubernetesComputer computer, TaskListener listener) {
         computer.setAcceptingTasks(false);
-        KubernetesSlave node = kubernetesComputer.getNode();
+        KubernetesSlave node = computer.getNode();
         if (node == null) {
             throw new IllegalStateException("Node has been removed, cannot launch " + computer.getName());
         }
-        if (launched) {
-            LOGGER.log(INFO, "Agent has already been launched, activating: {0}", node.getNodeName());
-            computer.setAcceptingTasks(true);
-            return;
+        synchronized (this) {
+            if (launched) {
+                LOGGER.log(INFO, "Agent has already been launched, activating: {0}", node.getNodeName());
+                computer.setAcceptingTasks(true);
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> launch = launching;
+            if (launch != null) {
+                LOGGER.log(FINE, "Agent is already being launched: {0}", node.getNodeName());
+                return launch;
+            }
+            CompletableFuture<Void> started = new Launch(computer, node, listener).start();
+            launching = started;
+            started.whenComplete((v, t) -> launchCompleted(started));
+            return started;
+        }
+    }
+
+    private synchronized void launchCompleted(CompletableFuture<Void> launch) {
+        if (launching == launch) {
+            launching = null;
         }
+    }
 
-        String cloudName = node.getCloudName();
-        final PodTemplate template = node.getTemplate();
-        try {
+    /**
+     * The stages of the launch of one agent.
+     */
+    private class Launch {
+        // We need the pod to be running and connected before the launch completes
+        // otherwise the launcher keeps being called multiple times
+        private final List<String> validStates = ImmutableList.of("Running");
+
+        private final KubernetesComputer computer;
+        private final KubernetesSlave node;
+        private final TaskListener listener;
+        private final String cloudName;
+        private final PodTemplate template;
+
+        private final long started = System.currentTimeMillis();
+        private long stageStarted = started;
+        private final Map<String, Long> timings = new LinkedHashMap<>();
+        private final PodLaunchTimings launchTimings;
+        private volatile long readyTimestamp;
+
+        private KubernetesCloud cloud;
+        private KubernetesClient client;
+        private String namespace;
+        private String podName;
+        private TaskListener runListener;
+        private AllContainersRunningPodWatcher podWatcher;
+        private final List<Watch> watches = new ArrayList<>();
+        @CheckForNull
+        private ScheduledFuture<?> ticker;
+
+        private final CompletableFuture<Void> connected = new CompletableFuture<>();
+        private final AtomicBoolean failing = new AtomicBoolean();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long connectStarted;
+        private volatile long lastReportTimestamp;
+        @CheckForNull
+        private volatile String status;
+        @CheckForNull
+        private volatile List<ContainerStatus> containerStatuses;
+
+        Launch(KubernetesComputer computer, KubernetesSlave node, TaskListener listener) {
+            this.computer = computer;
+            this.node = node;
+            this.listener = listener;
+            this.cloudName = node.getCloudName();
+            this.template = node.getTemplate();
+            this.launchTimings = new PodLaunchTimings(node.getNodeName(), template.getName());
+        }
+
+        CompletableFuture<Void> start() {
+            return CompletableFuture.supplyAsync(this::preparePod, LAUNCH_EXECUTOR)
+                    .thenCompose(pod -> create(pod, 0))
+                    .thenApplyAsync(this::watchPod, LAUNCH_EXECUTOR)
+                    .thenCompose(this::whenAllContainersRunning)
+                    .thenCompose(this::whenConnected)
+                    .handleAsync(this::completed, LAUNCH_EXECUTOR);
+        }
+
+        private void stage(String name) {
+            long now = System.currentTimeMillis();
+            timings.put(name, now - stageStarted);
+            stageStarted = now;
+        }
+
+        private Pod preparePod() {
             KubernetesCloud cloud = node.getKubernetesCloud();
-            KubernetesClient client = cloud.connect();
+            this.cloud = cloud;
+            KubernetesClient client;
+            try {
+                client = cloud.connect();
+            } catch (KubernetesAuthException | IOException e) {
+                throw new CompletionException(e);
+            }
+            this.client = client;
             Pod pod = template.build(node);
             node.assignPod(pod);
 
             String podName = pod.getMetadata().getName();
+            this.podName = podName;
 
             String namespace = Arrays.asList( //
                     pod.getMetadata().getNamespace(),
                     template.getNamespace(), client.getNamespace()) //
                     .stream().filter(s -> StringUtils.isNotBlank(s)).findFirst().orElse(null);
+            this.namespace = namespace;
             node.setNamespace(namespace);
 
-
             TaskListener runListener = template.getListener();
+            this.runListener = runListener;
+
+            // Subscribed before creating the pod so that scheduling events are not missed
+            watches.add(eventWatch(cloud, client, podName, namespace, runListener));
+            return pod;
+        }
+
+        /**
+         * Creates the pod once the {@link PodCreationLimiter} of the cloud allows it, retrying transient failures.
+         */
+        private CompletableFuture<Pod> create(Pod pod, int attempt) {
+            long queued = System.currentTimeMillis();
+            return PodCreationLimiter.get(cloudName).acquire(StringUtils.defaultString(template.getName()))
+                    .thenApplyAsync(v -> {
+                        Metrics.metricRegistry().timer(MetricNames.metricNameForPodCreationWait(cloudName))
+                                .update(System.currentTimeMillis() - queued, TimeUnit.MILLISECONDS);
+                        return createPod(pod);
+                    }, LAUNCH_EXECUTOR)
+                    .handle((created, failure) -> {
+                        CompletableFuture<Pod> result = new CompletableFuture<>();
+                        if (failure == null) {
+                            result.complete(created);
+                            return result;
+                        }
+                        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                        if (attempt >= CREATE_RETRIES || !isRetryable(cause)) {
+                            result.completeExceptionally(cause);
+                            return result;
+                        }
+                        long delay = retryDelay(attempt);
+                        LOGGER.log(FINE, "Retrying creation of pod {0} in {1} ms, attempt {2}",
+                                new Object[] {podName, delay, attempt + 1});
+                        Metrics.metricRegistry().counter(MetricNames.CREATION_RETRIED).inc();
+                        Timer.get().schedule(() -> create(pod, attempt + 1).whenComplete((p, t) -> {
+                            if (t != null) {
+                                result.completeExceptionally(t);
+                            } else {
+                                result.complete(p);
+                            }
+                        }), delay, TimeUnit.MILLISECONDS);
+                        return result;
+                    })
+                    .thenCompose(result -> result);
+        }
 
+        private Pod createPod(Pod pod) {
             LOGGER.log(FINE, () -> "Creating Pod: " + cloudName + " " + namespace + "/" + podName);
             try {
                 pod = client.pods().inNamespace(namespace).create(pod);
@@ -158,118 +370,236 @@ public class KubernetesLauncher extends JNLPLauncher {
                 }
                 throw e;
             }
+            if (!PodCache.isSynced(cloud, namespace)) {
+                // Otherwise the reserved slot is released once the pod cache sees the pod
+                CapacityLedger.get(cloud).release(node.getNodeName());
+            }
             LOGGER.log(INFO, () -> "Created Pod: " + cloudName + " " + namespace + "/" + podName);
             listener.getLogger().printf("Created Pod: %s %s/%s%n", cloudName, namespace, podName);
             Metrics.metricRegistry().counter(MetricNames.PODS_CREATED).inc();
 
             runListener.getLogger().printf("Created Pod: %s %s/%s%n", cloudName, namespace, podName);
-            kubernetesComputer.setLaunching(true);
+            computer.setLaunching(true);
+            if (node.getPlannedTimestamp() > 0) {
+                launchTimings.set(PodLaunchTimings.Phase.PROVISION, System.currentTimeMillis() - node.getPlannedTimestamp());
+            }
+            stage("create");
+            return pod;
+        }
 
+        private Pod watchPod(Pod pod) {
             template.getWorkspaceVolume().createVolume(client, pod.getMetadata());
-            watcher = new AllContainersRunningPodWatcher(client, pod, runListener);
-            try (Watch w1 = client.pods().inNamespace(namespace).withName(podName).watch(watcher);
-                 Watch w2 = eventWatch(client, podName, namespace, runListener)) {
-                assert watcher != null; // assigned 3 lines above
-                watcher.await(template.getSlaveConnectTimeout(), TimeUnit.SECONDS);
-            }
-            LOGGER.log(INFO, () -> "Pod is running: " + cloudName + " " + namespace + "/" + podName);
+            podWatcher = new AllContainersRunningPodWatcher(client, pod, runListener);
+            watcher = podWatcher;
+            // The pod watch is kept open until the agent is online, so that failures are noticed as they happen
+            watches.add(client.pods().inNamespace(namespace).withName(podName).watch(podWatcher));
+            ticker = Timer.get().scheduleWithFixedDelay(this::tick, POLL_INTERVAL, POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            stage("prepare");
+            return pod;
+        }
 
-            // We need the pod to be running and connected before returning
-            // otherwise this method keeps being called multiple times
-            List<String> validStates = ImmutableList.of("Running");
-
-            int waitForSlaveToConnect = template.getSlaveConnectTimeout();
-            int waitedForSlave;
-
-            // now wait for agent to be online
-            SlaveComputer slaveComputer = null;
-            String status = null;
-            List<ContainerStatus> containerStatuses = null;
-            long lastReportTimestamp = System.currentTimeMillis();
-            for (waitedForSlave = 0; waitedForSlave < waitForSlaveToConnect; waitedForSlave++) {
-                slaveComputer = node.getComputer();
-                if (slaveComputer == null) {
-                    Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
-                    throw new IllegalStateException("Node was deleted, computer is null");
-                }
-                if (slaveComputer.isOnline()) {
-                    break;
-                }
+        private CompletableFuture<Pod> whenAllContainersRunning(Pod pod) {
+            int timeout = template.getSlaveConnectTimeout();
+            CompletableFuture<Pod> running = podWatcher.whenAllContainersRunning();
+            ScheduledFuture<?> timer = Timer.get().schedule(
+                    () -> running.completeExceptionally(new KubernetesClientTimeoutException(pod, timeout, TimeUnit.SECONDS)),
+                    timeout, TimeUnit.SECONDS);
+            running.whenComplete((p, t) -> timer.cancel(false));
+            return running;
+        }
 
-                // Check that the pod hasn't failed already
-                pod = client.pods().inNamespace(namespace).withName(podName).get();
-                if (pod == null) {
-                    Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
-                    throw new IllegalStateException("Pod no longer exists: " + podName);
-                }
-                status = pod.getStatus().getPhase();
-                if (!validStates.contains(status)) {
-                    Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
-                    Metrics.metricRegistry().counter(MetricNames.metricNameForPodStatus(status)).inc();
-                    break;
-                }
+        private CompletableFuture<Void> whenConnected(Pod pod) {
+            stage("running");
+            readyTimestamp = System.currentTimeMillis();
+            launchTimings.measure(pod);
+            LOGGER.log(INFO, () -> "Pod is running: " + cloudName + " " + namespace + "/" + podName);
+            connectStarted = lastReportTimestamp = System.currentTimeMillis();
+            ScheduledFuture<?> timer = Timer.get().schedule(this::notConnected, template.getSlaveConnectTimeout(), TimeUnit.SECONDS);
+            connected.whenComplete((v, t) -> timer.cancel(false));
+            podWatcher.addChangeListener(this::checkConnected);
+            checkConnected();
+            return connected;
+        }
 
-                containerStatuses = pod.getStatus().getContainerStatuses();
-                List<ContainerStatus> terminatedContainers = new ArrayList<>();
-                for (ContainerStatus info : containerStatuses) {
-                    if (info != null) {
-                        if (info.getState().getTerminated() != null) {
-                            // Container has errored
-                            LOGGER.log(INFO, "Container is terminated {0} [{2}]: {1}",
-                                    new Object[] { podName, info.getState().getTerminated(), info.getName() });
-                            listener.getLogger().printf("Container is terminated %1$s [%3$s]: %2$s%n", podName,
-                                    info.getState().getTerminated(), info.getName());
-                            Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
-                            terminatedContainers.add(info);
-                        }
-                    }
-                }
+        /**
+         * Called on every pod change and when the agent comes online.
+         */
+        private void checkConnected() {
+            if (connected.isDone()) {
+                return;
+            }
+            SlaveComputer slaveComputer = node.getComputer();
+            if (slaveComputer == null) {
+                Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
+                connected.completeExceptionally(new IllegalStateException("Node was deleted, computer is null"));
+                return;
+            }
+            if (slaveComputer.isOnline()) {
+                connected.complete(null);
+                return;
+            }
 
-                checkTerminatedContainers(terminatedContainers, podName, namespace, node, client);
+            // Check that the pod hasn't failed already
+            Pod pod = podWatcher.getPod();
+            if (pod == null) {
+                Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
+                connected.completeExceptionally(new IllegalStateException("Pod no longer exists: " + podName));
+                return;
+            }
+            String status = pod.getStatus().getPhase();
+            this.status = status;
+            if (!validStates.contains(status)) {
+                Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
+                Metrics.metricRegistry().counter(MetricNames.metricNameForPodStatus(status)).inc();
+                notConnected();
+                return;
+            }
 
-                if (lastReportTimestamp + REPORT_INTERVAL < System.currentTimeMillis()) {
-                    LOGGER.log(INFO, "Waiting for agent to connect ({1}/{2}): {0}",
-                            new Object[]{podName, waitedForSlave, waitForSlaveToConnect});
-                    listener.getLogger().printf("Waiting for agent to connect (%2$s/%3$s): %1$s%n", podName, waitedForSlave,
-                            waitForSlaveToConnect);
-                    lastReportTimestamp = System.currentTimeMillis();
+            List<ContainerStatus> containerStatuses = pod.getStatus().getContainerStatuses();
+            this.containerStatuses = containerStatuses;
+            List<ContainerStatus> terminatedContainers = new ArrayList<>();
+            for (ContainerStatus info : containerStatuses) {
+                if (info != null) {
+                    if (info.getState().getTerminated() != null) {
+                        // Container has errored
+                        LOGGER.log(INFO, "Container is terminated {0} [{2}]: {1}",
+                                new Object[] { podName, info.getState().getTerminated(), info.getName() });
+                        listener.getLogger().printf("Container is terminated %1$s [%3$s]: %2$s%n", podName,
+                                info.getState().getTerminated(), info.getName());
+                        Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
+                        terminatedContainers.add(info);
+                    }
                 }
-                Thread.sleep(1000);
             }
-            if (slaveComputer == null || slaveComputer.isOffline()) {
+            if (!terminatedContainers.isEmpty()) {
+                fail(() -> checkTerminatedContainers(terminatedContainers, podName, namespace, node, client));
+            }
+        }
+
+        private void notConnected() {
+            fail(() -> {
                 Metrics.metricRegistry().counter(MetricNames.LAUNCH_FAILED).inc();
                 Metrics.metricRegistry().counter(MetricNames.FAILED_TIMEOUT).inc();
 
                 logLastLines(containerStatuses, podName, namespace, node, null, client);
-                throw new IllegalStateException(
-                        "Agent is not connected after " + waitedForSlave + " seconds, status: " + status);
+                throw new IllegalStateException("Agent is not connected after "
+                        + TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - connectStarted) + " seconds, status: " + status);
+            });
+        }
+
+        /**
+         * Fails the connection stage once, collecting diagnostics from the API server off the calling thread.
+         */
+        private void fail(Runnable failure) {
+            if (!failing.compareAndSet(false, true)) {
+                return;
             }
+            LAUNCH_EXECUTOR.execute(() -> {
+                try {
+                    failure.run();
+                } catch (Throwable t) {
+                    connected.completeExceptionally(t);
+                }
+            });
+        }
 
-            computer.setAcceptingTasks(true);
-            launched = true;
-            try {
-                // We need to persist the "launched" setting...
-                node.save();
-            } catch (IOException e) {
-                LOGGER.log(Level.WARNING, "Could not save() agent: " + e.getMessage(), e);
+        /**
+         * Reports progress while waiting for the agent, and refreshes the pod if its watch was closed.
+         */
+        private void tick() {
+            if (!podWatcher.isWatching() && refreshing.compareAndSet(false, true)) {
+                LAUNCH_EXECUTOR.execute(() -> {
+                    try {
+                        podWatcher.update(client.pods().inNamespace(namespace).withName(podName).get());
+                    } catch (RuntimeException e) {
+                        LOGGER.log(FINE, "Failed to refresh pod " + namespace + "/" + podName, e);
+                    } finally {
+                        refreshing.set(false);
+                    }
+                });
+            }
+            long now = System.currentTimeMillis();
+            if (connectStarted > 0 && !connected.isDone() && lastReportTimestamp + REPORT_INTERVAL <= now) {
+                long waitedForSlave = TimeUnit.MILLISECONDS.toSeconds(now - connectStarted);
+                int waitForSlaveToConnect = template.getSlaveConnectTimeout();
+                LOGGER.log(INFO, "Waiting for agent to connect ({1}/{2}): {0}",
+                        new Object[]{podName, waitedForSlave, waitForSlaveToConnect});
+                listener.getLogger().printf("Waiting for agent to connect (%2$s/%3$s): %1$s%n", podName, waitedForSlave,
+                        waitForSlaveToConnect);
+                lastReportTimestamp = now;
+            }
+        }
+
+        private Void completed(Void result, Throwable failure) {
+            if (ticker != null) {
+                ticker.cancel(false);
+            }
+            for (Watch watch : watches) {
+                watch.close();
+            }
+            if (failure == null) {
+                stage("connect");
+                computer.setAcceptingTasks(true);
+                launched = true;
+                try {
+                    // We need to persist the "launched" setting...
+                    node.save();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not save() agent: " + e.getMessage(), e);
+                }
+                Metrics.metricRegistry().counter(MetricNames.PODS_LAUNCHED).inc();
+                launchTimings.set(PodLaunchTimings.Phase.CONNECT, System.currentTimeMillis() - readyTimestamp);
+                launchTimings.record(cloud, template);
+                node.setLaunchTimings(launchTimings);
+                LOGGER.log(INFO, "Agent {0} launched in {1} ms, stages: {2}, phases: {3}",
+                        new Object[] {node.getNodeName(), System.currentTimeMillis() - started, timings, launchTimings});
+                listener.getLogger().printf("Agent %s launched in %d ms, stages: %s, phases: %s%n",
+                        node.getNodeName(), System.currentTimeMillis() - started, timings, launchTimings);
+                return null;
             }
-            Metrics.metricRegistry().counter(MetricNames.PODS_LAUNCHED).inc();
-        } catch (Throwable ex) {
+            Throwable ex = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
             setProblem(ex);
             LOGGER.log(Level.WARNING, String.format("Error in provisioning; agent=%s, template=%s", node, template), ex);
+            Functions.printStackTrace(ex, listener.error("Error in provisioning; agent=%s", node.getNodeName()));
             LOGGER.log(Level.FINER, "Removing Jenkins node: {0}", node.getNodeName());
-            try {
-                node.terminate();
-            } catch (IOException | InterruptedException e) {
-                LOGGER.log(Level.WARNING, "Unable to remove Jenkins node", e);
-            }
-            throw Throwables.propagate(ex);
+            // Not on the launch executor, so that a slow pod deletion does not hold back other launches
+            Computer.threadPoolForRemoting.submit(() -> {
+                try (ACLContext ctx = ACL.as(ACL.SYSTEM)) {
+                    node.terminate();
+                } catch (IOException | InterruptedException e) {
+                    LOGGER.log(Level.WARNING, "Unable to remove Jenkins node", e);
+                }
+            });
+            throw new CompletionException(ex);
+        }
+    }
+
+    static boolean isRetryable(Throwable t) {
+        if (!(t instanceof KubernetesClientException)) {
+            return false;
         }
+        KubernetesClientException e = (KubernetesClientException) t;
+        int httpCode = e.getCode();
+        return httpCode == 429 || (500 <= httpCode && httpCode < 600)
+                || (httpCode == 409 && e.getMessage() != null && e.getMessage().contains("Operation cannot be fulfilled on resourcequotas"));
     }
 
-    private Watch eventWatch(KubernetesClient client, String podName, String namespace, TaskListener runListener) {
+    /**
+     * Exponential backoff with jitter, so that pods failing together are not created again at the same time.
+     */
+    static long retryDelay(int attempt) {
+        long delay = CREATE_RETRY_DELAY << Math.min(attempt, 10);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private Watch eventWatch(KubernetesCloud cloud, KubernetesClient client, String podName, String namespace, TaskListener runListener) {
+        TaskListenerEventWatcher eventWatcher = new TaskListenerEventWatcher(podName, runListener);
+        Watch subscription = PodEventInformer.subscribe(cloud, client, namespace, podName, eventWatcher);
+        if (subscription != null) {
+            return subscription;
+        }
         try {
-            return client.events().inNamespace(namespace).withField("involvedObject.name", podName).watch(new TaskListenerEventWatcher(podName, runListener));
+            return client.events().inNamespace(namespace).withField("involvedObject.name", podName).watch(eventWatcher);
         } catch (KubernetesClientException e) {
             LOGGER.log(Level.INFO, e, () -> "Cannot watch events on " + namespace + "/" +podName);
         }
@@ -325,4 +655,23 @@ public class KubernetesLauncher extends JNLPLauncher {
         return watcher;
     }
 
+    /**
+     * Wakes up the launcher of an agent as soon as it is online.
+     */
+    @Extension
+    public static class OnlineListener extends ComputerListener {
+        @Override
+        public void onOnline(Computer c, TaskListener listener) {
+            if (c instanceof KubernetesComputer) {
+                KubernetesSlave node = ((KubernetesComputer) c).getNode();
+                if (node != null && node.getLauncher() instanceof KubernetesLauncher) {
+                    AllContainersRunningPodWatcher watcher = ((KubernetesLauncher) node.getLauncher()).getWatcher();
+                    if (watcher != null) {
+                        watcher.signalChange();
+                    }
+                }
+            }
+        }
+    }
+
 }
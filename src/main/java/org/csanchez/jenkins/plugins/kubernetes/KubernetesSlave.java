@@ -6,7 +6,6 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
@@ -36,10 +35,13 @@ import hudson.console.ModelHyperlinkNote;
 import hudson.model.Computer;
 import hudson.model.Descriptor;
 import hudson.model.Executor;
+import hudson.model.Job;
 import hudson.model.Label;
 import hudson.model.Node;
 import hudson.model.Queue;
+import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.model.queue.SubTask;
 import hudson.remoting.Engine;
 import hudson.remoting.VirtualChannel;
 import hudson.slaves.AbstractCloudSlave;
@@ -84,6 +86,14 @@ public class KubernetesSlave extends AbstractCloudSlave {
     @CheckForNull
     private transient Pod pod;
 
+    /**
+     * When the agent was planned, 0 if it was loaded from disk.
+     */
+    private transient long plannedTimestamp = System.currentTimeMillis();
+
+    @CheckForNull
+    private transient PodLaunchTimings launchTimings;
+
     @Nonnull
     public PodTemplate getTemplate() {
         // Look up updated pod template after a restart
@@ -161,8 +171,14 @@ public class KubernetesSlave extends AbstractCloudSlave {
         return cloudName;
     }
 
+    @Nonnull
+    String getPodTemplateId() {
+        return podTemplateId;
+    }
+
     public void setNamespace(@Nonnull String namespace) {
         this.namespace = namespace;
+        KubernetesSlaveIndex.update(this);
     }
 
     @Nonnull
@@ -276,10 +292,16 @@ public class KubernetesSlave extends AbstractCloudSlave {
         return retentionPolicy;
     }
 
+    /**
+     * Sends the order not to reconnect to the agent, and has its pod deleted in the background.
+     * <p>
+     * The node is removed by {@link #terminate()} as soon as this returns, without waiting for the pod to be deleted.
+     */
     @Override
     protected void _terminate(TaskListener listener) throws IOException, InterruptedException {
         LOGGER.log(Level.INFO, "Terminating Kubernetes instance for agent {0}", name);
-        
+        CapacityLedger.get(getCloudName()).release(name);
+
         KubernetesCloud cloud;
         try {
             cloud = getKubernetesCloud();
@@ -302,7 +324,9 @@ public class KubernetesSlave extends AbstractCloudSlave {
         // Prior to termination, determine if we should delete the slave pod based on
         // the slave pod's current state and the pod retention policy.
         // Healthy slave pods should still have a JNLP agent running at this point.
-        Pod pod = client.pods().inNamespace(getNamespace()).withName(name).get();
+        // The pod cache is used when it knows the pod, to avoid a request per agent when many are terminated at once.
+        Optional<Pod> cachedPod = PodCache.getCachedPod(cloud, getNamespace(), name);
+        Pod pod = cachedPod != null ? cachedPod.orElse(null) : client.pods().inNamespace(getNamespace()).withName(name).get();
         boolean deletePod = getPodRetention(cloud).shouldDeletePod(cloud, pod);
         
         Computer computer = toComputer();
@@ -314,12 +338,12 @@ public class KubernetesSlave extends AbstractCloudSlave {
         }
 
         // Tell the slave to stop JNLP reconnects.
+        // Removing the node closes the channel, so the order has to be acknowledged first.
         VirtualChannel ch = computer.getChannel();
         if (ch != null) {
-            Future<Void> disconnectorFuture = ch.callAsync(new SlaveDisconnector());
             try {
-                disconnectorFuture.get(DISCONNECTION_TIMEOUT, TimeUnit.SECONDS);
-            } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                ch.callAsync(new SlaveDisconnector()).get(DISCONNECTION_TIMEOUT, TimeUnit.SECONDS);
+            } catch (IOException | ExecutionException | TimeoutException e) {
                 String msg = String.format("Ignoring error sending order to not reconnect agent %s: %s", name, e.getMessage());
                 LOGGER.log(Level.INFO, msg, e);
             }
@@ -332,20 +356,15 @@ public class KubernetesSlave extends AbstractCloudSlave {
             return;
         }
 
-        if (deletePod) {
-            deleteSlavePod(listener, client);
-            Metrics.metricRegistry().counter(MetricNames.PODS_TERMINATED).inc();
-        } else {
+        if (!deletePod) {
             // Log warning, as the slave pod may still be running
             LOGGER.log(Level.WARNING, "Slave pod {0} was not deleted due to retention policy {1}.",
                     new Object[] { name, getPodRetention(cloud) });
         }
-        String msg = String.format("Disconnected computer %s", name);
-        LOGGER.log(Level.INFO, msg);
-        listener.getLogger().println(msg);
+        PodTerminator.terminate(this, client, deletePod, listener);
     }
 
-    private void deleteSlavePod(TaskListener listener, KubernetesClient client) throws IOException {
+    void deleteSlavePod(TaskListener listener, KubernetesClient client) {
         try {
             Boolean deleted = client.pods().inNamespace(getNamespace()).withName(name).
                 cascading(true). // TODO JENKINS-58306 pending https://github.com/fabric8io/kubernetes-client/pull/1620
@@ -402,6 +421,7 @@ public class KubernetesSlave extends AbstractCloudSlave {
                     );
                     printAgentDescription(listener);
                     checkHomeAndWarnIfNeeded(listener);
+                    attachLaunchTimings(currentExecutable);
                 }
             }
         }
@@ -412,6 +432,51 @@ public class KubernetesSlave extends AbstractCloudSlave {
         this.pod = pod;
     }
 
+    long getPlannedTimestamp() {
+        return plannedTimestamp;
+    }
+
+    void setLaunchTimings(@CheckForNull PodLaunchTimings launchTimings) {
+        this.launchTimings = launchTimings;
+    }
+
+    /**
+     * Adds the launch timings of this agent to the first build running on it.
+     */
+    private void attachLaunchTimings(Queue.Executable executable) {
+        PodLaunchTimings timings = launchTimings;
+        if (timings == null) {
+            return;
+        }
+        Run<?, ?> run = getRun(executable);
+        if (run != null) {
+            launchTimings = null;
+            try {
+                PodLaunchTimingsAction.add(run, timings);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not save launch timings of " + name + " in " + run, e);
+            }
+        }
+    }
+
+    @CheckForNull
+    private static Run<?, ?> getRun(Queue.Executable executable) {
+        if (executable instanceof Run) {
+            return (Run<?, ?>) executable;
+        }
+        // Pipeline node blocks run as a task whose URL is the one of the build
+        SubTask parent = executable.getParent();
+        if (parent instanceof Queue.Task && parent.getOwnerTask() instanceof Job) {
+            String url = ((Queue.Task) parent).getUrl();
+            for (Run<?, ?> run = ((Job<?, ?>) parent.getOwnerTask()).getLastBuild(); run != null; run = run.getPreviousBuildInProgress()) {
+                if (run.isBuilding() && run.getUrl().equals(url)) {
+                    return run;
+                }
+            }
+        }
+        return null;
+    }
+
     private void printAgentDescription(TaskListener listener) {
         if (pod != null && template.isShowRawYaml()) {
             listener.getLogger().println(podAsYaml());
@@ -0,0 +1,227 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.slaves.ComputerListener;
+import jenkins.model.Jenkins;
+import jenkins.model.NodeListener;
+
+/**
+ * Index of the {@link KubernetesSlave}s of this Jenkins instance, by pod and by cloud.
+ * <p>
+ * Pod events and provisioning would otherwise scan every node of the instance to find the agents they are about.
+ * Only node names are indexed, nodes themselves are always resolved through {@link Jenkins#getNode(String)}, so that
+ * lookups never return a node that was replaced or removed. The index is built once nodes are loaded and kept up to
+ * date by {@link NodeListener} and {@link ComputerListener} events, and by {@link KubernetesSlave#setNamespace(String)}.
+ */
+@Restricted(NoExternalUse.class)
+public final class KubernetesSlaveIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(KubernetesSlaveIndex.class.getName());
+
+    /**
+     * Node names indexed by namespace and pod name.
+     */
+    private static final Map<String, String> byPod = new ConcurrentHashMap<>();
+
+    /**
+     * Node names indexed by cloud name.
+     */
+    private static final Map<String, Set<String>> byCloud = new ConcurrentHashMap<>();
+
+    /**
+     * Keys under which each node is indexed, to update the index when a node changes.
+     */
+    private static final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private static volatile boolean initialized;
+
+    private KubernetesSlaveIndex() {
+    }
+
+    /**
+     * @param namespace the namespace of the pod
+     * @param podName the name of the pod
+     * @return the agent running in the given pod, if any.
+     */
+    @Nonnull
+    public static Optional<KubernetesSlave> get(@CheckForNull String namespace, @CheckForNull String podName) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null || podName == null) {
+            return Optional.empty();
+        }
+        ensureInitialized(jenkins);
+        String nodeName = byPod.get(podKey(namespace, podName));
+        Node node = nodeName == null ? null : jenkins.getNode(nodeName);
+        if (node instanceof KubernetesSlave && podName.equals(((KubernetesSlave) node).getPodName())) {
+            return Optional.of((KubernetesSlave) node);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @param cloudName the name of a cloud
+     * @return the agents of the given cloud.
+     */
+    @Nonnull
+    public static List<KubernetesSlave> getNodes(@Nonnull String cloudName) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return Collections.emptyList();
+        }
+        ensureInitialized(jenkins);
+        return resolve(jenkins, byCloud.getOrDefault(cloudName, Collections.emptySet()));
+    }
+
+    /**
+     * @return the agents of all clouds.
+     */
+    @Nonnull
+    public static List<KubernetesSlave> getNodes() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return Collections.emptyList();
+        }
+        ensureInitialized(jenkins);
+        return resolve(jenkins, entries.keySet());
+    }
+
+    private static List<KubernetesSlave> resolve(Jenkins jenkins, Set<String> nodeNames) {
+        List<KubernetesSlave> nodes = new ArrayList<>(nodeNames.size());
+        for (String nodeName : nodeNames) {
+            Node node = jenkins.getNode(nodeName);
+            if (node instanceof KubernetesSlave) {
+                nodes.add((KubernetesSlave) node);
+            }
+        }
+        return nodes;
+    }
+
+    private static void ensureInitialized(Jenkins jenkins) {
+        if (!initialized) {
+            rebuild(jenkins);
+        }
+    }
+
+    /**
+     * Nodes loaded from disk do not fire {@link NodeListener} events.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void init() {
+        rebuild(Jenkins.get());
+    }
+
+    static synchronized void rebuild(@Nonnull Jenkins jenkins) {
+        byPod.clear();
+        byCloud.clear();
+        entries.clear();
+        for (Node node : jenkins.getNodes()) {
+            if (node instanceof KubernetesSlave) {
+                add((KubernetesSlave) node);
+            }
+        }
+        initialized = true;
+        LOGGER.log(Level.FINE, "Indexed {0} Kubernetes agents", entries.size());
+    }
+
+    static synchronized void add(@Nonnull KubernetesSlave node) {
+        remove(node.getNodeName());
+        Entry entry = new Entry(podKey(node.getNamespace(), node.getPodName()), node.getCloudName());
+        entries.put(node.getNodeName(), entry);
+        byPod.put(entry.podKey, node.getNodeName());
+        if (entry.cloudName != null) {
+            byCloud.computeIfAbsent(entry.cloudName, k -> ConcurrentHashMap.newKeySet()).add(node.getNodeName());
+        }
+    }
+
+    static synchronized void remove(@Nonnull String nodeName) {
+        Entry entry = entries.remove(nodeName);
+        if (entry == null) {
+            return;
+        }
+        byPod.remove(entry.podKey, nodeName);
+        if (entry.cloudName != null) {
+            Set<String> names = byCloud.get(entry.cloudName);
+            if (names != null) {
+                names.remove(nodeName);
+            }
+        }
+    }
+
+    /**
+     * Indexes the node again if it is already known, its namespace having changed.
+     */
+    static synchronized void update(@Nonnull KubernetesSlave node) {
+        if (entries.containsKey(node.getNodeName())) {
+            add(node);
+        }
+    }
+
+    private static String podKey(@CheckForNull String namespace, @Nonnull String podName) {
+        return namespace + "/" + podName;
+    }
+
+    private static final class Entry {
+        private final String podKey;
+        @CheckForNull
+        private final String cloudName;
+
+        Entry(String podKey, @CheckForNull String cloudName) {
+            this.podKey = podKey;
+            this.cloudName = cloudName;
+        }
+    }
+
+    @Extension
+    public static class NodeListenerImpl extends NodeListener {
+        @Override
+        protected void onCreated(@Nonnull Node node) {
+            if (node instanceof KubernetesSlave) {
+                add((KubernetesSlave) node);
+            }
+        }
+
+        @Override
+        protected void onUpdated(@Nonnull Node oldOne, @Nonnull Node newOne) {
+            remove(oldOne.getNodeName());
+            onCreated(newOne);
+        }
+
+        @Override
+        protected void onDeleted(@Nonnull Node node) {
+            remove(node.getNodeName());
+        }
+    }
+
+    @Extension
+    public static class ComputerListenerImpl extends ComputerListener {
+        @Override
+        public void onOnline(Computer c, TaskListener listener) {
+            Node node = c.getNode();
+            if (node instanceof KubernetesSlave) {
+                // The pod of the agent may have been created in another namespace than the one indexed
+                add((KubernetesSlave) node);
+            }
+        }
+    }
+}
@@ -7,20 +7,51 @@ public class MetricNames {
 
     public static final String CREATION_FAILED = PREFIX + ".pods.creation.failed";
     public static final String PODS_CREATED = PREFIX + ".pods.created";
+    public static final String CREATION_RETRIED = PREFIX + ".pods.creation.retried";
     public static final String LAUNCH_FAILED = PREFIX + ".pods.launch.failed";
     public static final String PODS_TERMINATED = PREFIX + ".pods.terminated";
+    public static final String PODS_TERMINATION_PENDING = PREFIX + ".pods.termination.pending";
     public static final String REACHED_POD_CAP = PREFIX + ".provision.reached.pod.cap";
     public static final String REACHED_GLOBAL_CAP = PREFIX + ".provision.reached.global.cap";
     public static final String FAILED_TIMEOUT = PREFIX + ".pods.launch.failed.timeout";
     public static final String PROVISION_NODES = PREFIX + ".provision.nodes";
     public static final String PROVISION_FAILED = PREFIX + ".provision.failed";
     public static final String PODS_LAUNCHED = PREFIX + ".pods.launched";
+    public static final String POD_CACHE_MISS = PREFIX + ".pods.cache.miss";
+    public static final String POD_CACHE_STALENESS = PREFIX + ".pods.cache.staleness";
+    public static final String REAPER_WATCH_RESTARTS = PREFIX + ".reaper.watch.restarts";
+    public static final String REAPER_EVENT_LAG = PREFIX + ".reaper.event.lag";
+    public static final String REAPER_EVENTS_QUEUED = PREFIX + ".reaper.events.queued";
+    public static final String REAPER_EVENTS_COALESCED = PREFIX + ".reaper.events.coalesced";
+    public static final String WARM_POOL_HIT = PREFIX + ".warmpool.hit";
+    public static final String WARM_POOL_MISS = PREFIX + ".warmpool.miss";
+    public static final String WARM_POOL_STARTED = PREFIX + ".warmpool.started";
 
     public static String metricNameForPodStatus(String status) {
         String formattedStatus = status == null ? "null" : status.toLowerCase();
         return PREFIX + ".pods.launch.status." + formattedStatus;
     }
 
+    public static String metricNameForLaunchPhase(String cloudName, String phase) {
+        return String.format("%s.%s.launch.%s", PREFIX, cloudName, phase);
+    }
+
+    public static String metricNameForLaunchPhase(String cloudName, String templateName, String phase) {
+        return String.format("%s.%s.%s.launch.%s", PREFIX, cloudName, templateName, phase);
+    }
+
+    public static String metricNameForPodCreationQueue(String cloudName) {
+        return String.format("%s.%s.pods.creation.queue", PREFIX, cloudName);
+    }
+
+    public static String metricNameForPodCreationWait(String cloudName) {
+        return String.format("%s.%s.pods.creation.wait", PREFIX, cloudName);
+    }
+
+    public static String metricNameForOrphans(String cloudName, String kind) {
+        return String.format("%s.%s.orphans.%s.reclaimed", PREFIX, cloudName, kind);
+    }
+
     public static String metricNameForLabel(Label label) {
         String labelText = (label == null) ? "nolabel" : label.getDisplayName();
         return String.format("%s.%s.provision.request", PREFIX, labelText);
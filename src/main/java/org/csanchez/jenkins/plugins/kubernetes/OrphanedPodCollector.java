@@ -0,0 +1,304 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import java.net.HttpURLConnection;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang.StringUtils;
+import org.csanchez.jenkins.plugins.kubernetes.pod.retention.PodRetention;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.EnvVar;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaimList;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import jenkins.metrics.api.Metrics;
+import jenkins.model.Jenkins;
+
+/**
+ * Deletes the agent pods that no Jenkins node refers to anymore, and the workspace claims of
+ * {@link org.csanchez.jenkins.plugins.kubernetes.volumes.workspace.DynamicPVCWorkspaceVolume} whose pod is gone.
+ * <p>
+ * Such pods are left behind when the controller stops while agents are running or when a pod deletion fails, and keep
+ * counting against {@link KubernetesCloud#getContainerCap()}. Each run looks at one page of pods and claims per cloud
+ * and namespace, continuing where the previous run stopped. A resource is only deleted once it has been seen orphaned
+ * for {@link #GRACE_PERIOD}, if the {@link PodRetention} of its cloud or template allows it, and if the pod is known to
+ * be started by this Jenkins instance: pods of clouds using a direct connection, or without {@code JENKINS_URL}, are
+ * kept. At most {@link #MAX_DELETIONS} resources are deleted per cloud and run.
+ * <p>
+ * Claims owned by their pod are garbage collected by Kubernetes, only claims without owner are looked at.
+ * <p>
+ * Pod retention set on a pipeline {@code podTemplate} is not known once its build completed, the retention of the
+ * cloud applies.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class OrphanedPodCollector extends AsyncPeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(OrphanedPodCollector.class.getName());
+
+    /**
+     * How often orphaned resources are looked for, in milliseconds.
+     */
+    private static final long RECURRENCE_PERIOD = Long.getLong(OrphanedPodCollector.class.getName() + ".recurrencePeriod",
+            TimeUnit.MINUTES.toMillis(5));
+
+    /**
+     * Time in milliseconds a resource must have been seen orphaned before being deleted.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tests")
+    @VisibleForTesting
+    static long GRACE_PERIOD = Long.getLong(OrphanedPodCollector.class.getName() + ".gracePeriod",
+            TimeUnit.MINUTES.toMillis(15));
+
+    /**
+     * Maximum number of pods and claims deleted per cloud on each run.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tests")
+    @VisibleForTesting
+    static int MAX_DELETIONS = Integer.getInteger(OrphanedPodCollector.class.getName() + ".maxDeletions", 20);
+
+    /**
+     * Number of pods or claims looked at per cloud and namespace on each run.
+     */
+    private static final int PAGE_SIZE = Integer.getInteger(OrphanedPodCollector.class.getName() + ".pageSize", 500);
+
+    /**
+     * Only logs the resources that would be deleted.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tests")
+    @VisibleForTesting
+    static boolean DRY_RUN = Boolean.getBoolean(OrphanedPodCollector.class.getName() + ".dryRun");
+
+    private static final boolean DISABLED = Boolean.getBoolean(OrphanedPodCollector.class.getName() + ".disabled");
+
+    /**
+     * Continue tokens of the pod and claim lists, by cloud, namespace and kind.
+     */
+    private final Map<String, String> continueTokens = new ConcurrentHashMap<>();
+
+    /**
+     * When resources were first seen orphaned, by uid.
+     */
+    private final Map<String, Long> orphanedSince = new ConcurrentHashMap<>();
+
+    public OrphanedPodCollector() {
+        super("Kubernetes orphaned pod collector");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return RECURRENCE_PERIOD;
+    }
+
+    @Override
+    protected Level getNormalLoggingLevel() {
+        return Level.FINEST;
+    }
+
+    @Override
+    protected void execution(TaskListener listener) {
+        if (DISABLED) {
+            return;
+        }
+        Jenkins jenkins = Jenkins.get();
+        Set<String> seen = new HashSet<>();
+        for (KubernetesCloud cloud : jenkins.clouds.getAll(KubernetesCloud.class)) {
+            try {
+                collect(cloud, seen);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to collect orphaned pods of cloud " + cloud.name, e);
+            }
+        }
+        // Resources no longer orphaned, or deleted by someone else, start over
+        long expired = System.currentTimeMillis() - 2 * GRACE_PERIOD - 2 * RECURRENCE_PERIOD;
+        orphanedSince.entrySet().removeIf(e -> !seen.contains(e.getKey()) && e.getValue() < expired);
+    }
+
+    private void collect(KubernetesCloud cloud, Set<String> seen) throws Exception {
+        KubernetesClient client = cloud.connect();
+        Set<String> namespaces = new HashSet<>();
+        namespaces.add(StringUtils.defaultIfBlank(cloud.getNamespace(), client.getNamespace()));
+        for (PodTemplate template : cloud.getTemplates()) {
+            if (StringUtils.isNotBlank(template.getNamespace())) {
+                namespaces.add(template.getNamespace());
+            }
+        }
+        int deletions = 0;
+        for (String namespace : namespaces) {
+            deletions += collectPods(cloud, client, namespace, MAX_DELETIONS - deletions, seen);
+            deletions += collectClaims(cloud, client, namespace, MAX_DELETIONS - deletions, seen);
+        }
+    }
+
+    private int collectPods(KubernetesCloud cloud, KubernetesClient client, String namespace, int maxDeletions, Set<String> seen) {
+        String key = cloud.name + "/" + namespace + "/pods";
+        PodList pods;
+        try {
+            pods = client.pods().inNamespace(namespace).withLabels(cloud.getPodLabelsMap()).list(PAGE_SIZE, continueTokens.get(key));
+        } catch (KubernetesClientException e) {
+            if (e.getCode() == HttpURLConnection.HTTP_GONE) {
+                // expired continue token, start over on next run
+                continueTokens.remove(key);
+                return 0;
+            }
+            throw e;
+        }
+        updateContinueToken(key, pods.getMetadata().getContinue());
+        String jenkinsUrl = cloud.isDirectConnection() ? null : cloud.getJenkinsUrlOrNull();
+        int deleted = 0;
+        for (Pod pod : pods.getItems()) {
+            String name = pod.getMetadata().getName();
+            if (pod.getMetadata().getDeletionTimestamp() != null || !KubernetesCloud.isRunningOrPending(pod)
+                    || KubernetesSlaveIndex.get(namespace, name).isPresent()
+                    || !isStartedBy(pod, jenkinsUrl) || !getPodRetention(cloud, pod).shouldDeletePod(cloud, pod)) {
+                continue;
+            }
+            if (!isOrphanedLongEnough(pod, seen) || deleted >= maxDeletions) {
+                continue;
+            }
+            if (DRY_RUN) {
+                LOGGER.log(Level.INFO, "Would delete orphaned agent pod {0}/{1}", new Object[] {namespace, name});
+                continue;
+            }
+            LOGGER.log(Level.INFO, "Deleting orphaned agent pod {0}/{1}", new Object[] {namespace, name});
+            if (Boolean.TRUE.equals(client.pods().inNamespace(namespace).withName(name).delete())) {
+                Metrics.metricRegistry().counter(MetricNames.metricNameForOrphans(cloud.name, "pods")).inc();
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Prefix of the workspace claim names, followed by the pod name.
+     */
+    private static final String CLAIM_PREFIX = "pvc-";
+
+    private int collectClaims(KubernetesCloud cloud, KubernetesClient client, String namespace, int maxDeletions, Set<String> seen) {
+        String key = cloud.name + "/" + namespace + "/pvcs";
+        PersistentVolumeClaimList claims;
+        try {
+            claims = client.persistentVolumeClaims().inNamespace(namespace).withLabels(KubernetesCloud.DEFAULT_POD_LABELS)
+                    .list(PAGE_SIZE, continueTokens.get(key));
+        } catch (KubernetesClientException e) {
+            if (e.getCode() == HttpURLConnection.HTTP_GONE) {
+                continueTokens.remove(key);
+                return 0;
+            }
+            throw e;
+        }
+        updateContinueToken(key, claims.getMetadata().getContinue());
+        int deleted = 0;
+        for (PersistentVolumeClaim claim : claims.getItems()) {
+            String name = claim.getMetadata().getName();
+            // Claims owned by their pod are deleted by Kubernetes along with it
+            if (!claim.getMetadata().getOwnerReferences().isEmpty() || claim.getMetadata().getDeletionTimestamp() != null
+                    || !name.startsWith(CLAIM_PREFIX) || deleted >= maxDeletions) {
+                continue;
+            }
+            String podName = name.substring(CLAIM_PREFIX.length());
+            // The pod of an agent is only looked up once the agent is gone
+            if (KubernetesSlaveIndex.get(namespace, podName).isPresent()
+                    || client.pods().inNamespace(namespace).withName(podName).get() != null) {
+                orphanedSince.remove(claim.getMetadata().getUid());
+                continue;
+            }
+            if (!isOrphanedLongEnough(claim, seen)) {
+                continue;
+            }
+            if (DRY_RUN) {
+                LOGGER.log(Level.INFO, "Would delete orphaned workspace claim {0}/{1}", new Object[] {namespace, name});
+                continue;
+            }
+            LOGGER.log(Level.INFO, "Deleting orphaned workspace claim {0}/{1}", new Object[] {namespace, name});
+            if (Boolean.TRUE.equals(client.persistentVolumeClaims().inNamespace(namespace).withName(name).delete())) {
+                Metrics.metricRegistry().counter(MetricNames.metricNameForOrphans(cloud.name, "pvcs")).inc();
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private void updateContinueToken(String key, @CheckForNull String continueToken) {
+        if (StringUtils.isEmpty(continueToken)) {
+            // last page, start over on next run
+            continueTokens.remove(key);
+        } else {
+            continueTokens.put(key, continueToken);
+        }
+    }
+
+    /**
+     * @return true if the resource was first seen orphaned more than the grace period ago, and is old enough.
+     */
+    private boolean isOrphanedLongEnough(HasMetadata resource, Set<String> seen) {
+        String uid = resource.getMetadata().getUid();
+        seen.add(uid);
+        long now = System.currentTimeMillis();
+        long since = orphanedSince.computeIfAbsent(uid, k -> now);
+        return now - since >= GRACE_PERIOD && now - getCreationTimestamp(resource) >= GRACE_PERIOD;
+    }
+
+    private static long getCreationTimestamp(HasMetadata resource) {
+        String creationTimestamp = resource.getMetadata().getCreationTimestamp();
+        if (creationTimestamp == null) {
+            return System.currentTimeMillis();
+        }
+        try {
+            return Instant.parse(creationTimestamp).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Pods of other Jenkins instances using the same namespace and labels are left alone, as are pods whose origin is
+     * not known.
+     */
+    private static boolean isStartedBy(Pod pod, @CheckForNull String jenkinsUrl) {
+        if (jenkinsUrl == null || pod.getSpec() == null) {
+            return false;
+        }
+        for (Container container : pod.getSpec().getContainers()) {
+            for (EnvVar env : container.getEnv()) {
+                if ("JENKINS_URL".equals(env.getName()) && env.getValue() != null) {
+                    return StringUtils.removeEnd(env.getValue(), "/").equals(StringUtils.removeEnd(jenkinsUrl, "/"));
+                }
+            }
+        }
+        return false;
+    }
+
+    @Nonnull
+    private static PodRetention getPodRetention(KubernetesCloud cloud, Pod pod) {
+        String digest = pod.getMetadata().getLabels().get("jenkins/label-digest");
+        Optional<PodTemplate> template = cloud.getTemplates().stream()
+                .filter(t -> digest != null && digest.equals(t.getLabelsMap().get("jenkins/label-digest")))
+                .findFirst();
+        return template.isPresent() ? template.get().getPodRetention() : cloud.getPodRetention();
+    }
+}
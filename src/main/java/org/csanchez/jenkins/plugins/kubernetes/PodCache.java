@@ -0,0 +1,324 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.dsl.base.OperationContext;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.SharedInformerFactory;
+import jenkins.metrics.api.Metrics;
+import jenkins.model.Jenkins;
+
+/**
+ * Watch-driven local cache of the pods started by a {@link KubernetesCloud}.
+ * <p>
+ * Backed by a shared informer on the cloud namespace, selecting on {@link KubernetesCloud#getPodLabels()}, so that
+ * provisioning capacity checks are answered in memory instead of listing pods on every
+ * {@link KubernetesCloud#provision} call. The informer periodically resyncs and reconnects its watch on failure.
+ * Until it has synced, {@link #getActivePodIndex(KubernetesCloud)} returns {@code null} and callers are expected to list
+ * pods from the API server instead.
+ */
+public class PodCache implements ResourceEventHandler<Pod> {
+
+    private static final Logger LOGGER = Logger.getLogger(PodCache.class.getName());
+
+    /**
+     * Resync period of the underlying informer, in milliseconds.
+     */
+    private static final long RESYNC_PERIOD = Long.getLong(PodCache.class.getName() + ".resyncPeriod",
+            TimeUnit.MINUTES.toMillis(5));
+
+    /**
+     * Disables the cache, capacity checks then always list pods from the API server.
+     */
+    private static final boolean DISABLED = Boolean.getBoolean(PodCache.class.getName() + ".disabled");
+
+    /**
+     * Delay in milliseconds before starting the informer again after it failed to start, doubled on each failure.
+     */
+    private static final long START_RETRY_DELAY = Long.getLong(PodCache.class.getName() + ".startRetryDelay",
+            TimeUnit.SECONDS.toMillis(10));
+
+    private static final long MAX_START_RETRY_DELAY = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Caches indexed by cloud name
+     */
+    private static final Map<String, PodCache> caches = new ConcurrentHashMap<>();
+
+    private final String cloudName;
+    private final int validity;
+    private final Map<String, Pod> pods = new ConcurrentHashMap<>();
+    private volatile PodLabelIndex index = new PodLabelIndex();
+
+    @CheckForNull
+    private volatile String namespace;
+    private volatile long lastEventTimestamp;
+    private volatile boolean stopped;
+    private int startFailures;
+    private long nextStartAttempt;
+
+    @CheckForNull
+    private volatile KubernetesClient client;
+    @CheckForNull
+    private SharedInformerFactory factory;
+    @CheckForNull
+    private SharedIndexInformer<Pod> informer;
+
+    @Restricted(NoExternalUse.class) // testing only
+    PodCache(String cloudName, int validity) {
+        this.cloudName = cloudName;
+        this.validity = validity;
+    }
+
+    /**
+     * Returns the counts of running or pending pods of the given cloud, as seen by its informer.
+     *
+     * @param cloud the cloud to look up pods for
+     * @return the live index of running or pending pods, or {@code null} if the cache is disabled or not synced yet.
+     */
+    @CheckForNull
+    public static PodLabelIndex getActivePodIndex(@Nonnull KubernetesCloud cloud) throws KubernetesAuthException, IOException {
+        PodCache cache = get(cloud);
+        if (cache == null || !cache.hasSynced()) {
+            Metrics.metricRegistry().counter(MetricNames.POD_CACHE_MISS).inc();
+            return null;
+        }
+        Metrics.metricRegistry().histogram(MetricNames.POD_CACHE_STALENESS).update(cache.getStaleness());
+        return cache.index;
+    }
+
+    /**
+     * @param cloud the cloud to check
+     * @return true if the pods of this cloud are currently being watched and the cache has synced.
+     */
+    public static boolean isSynced(@Nonnull KubernetesCloud cloud) {
+        PodCache cache = caches.get(cloud.name);
+        return cache != null && cache.validity == getValidity(cloud) && cache.hasSynced();
+    }
+
+    /**
+     * @param cloud the cloud to check
+     * @param namespace the namespace of the pods
+     * @return true if the pods of this cloud in the given namespace are currently being watched and the cache has
+     * synced.
+     */
+    public static boolean isSynced(@Nonnull KubernetesCloud cloud, @CheckForNull String namespace) {
+        PodCache cache = caches.get(cloud.name);
+        return cache != null && cache.validity == getValidity(cloud) && cache.hasSynced() && namespace != null
+                && namespace.equals(cache.namespace);
+    }
+
+    /**
+     * Looks up a pod of the given cloud without calling the API server.
+     *
+     * @param cloud the cloud the pod was started by
+     * @param namespace the namespace of the pod
+     * @param name the name of the pod
+     * @return the cached pod, an empty optional if the cache knows the pod does not exist, or {@code null} if the cache
+     * does not know, as it is not synced or does not watch the given namespace.
+     */
+    @CheckForNull
+    @SuppressFBWarnings(value = "NP_OPTIONAL_RETURN_NULL", justification = "null means unknown")
+    public static Optional<Pod> getCachedPod(@Nonnull KubernetesCloud cloud, @CheckForNull String namespace, @Nonnull String name) {
+        PodCache cache = caches.get(cloud.name);
+        if (cache == null || cache.validity != getValidity(cloud) || !cache.hasSynced() || namespace == null
+                || !namespace.equals(cache.namespace)) {
+            return null;
+        }
+        return Optional.ofNullable(cache.pods.get(name));
+    }
+
+    @CheckForNull
+    static PodCache get(@Nonnull KubernetesCloud cloud) throws KubernetesAuthException, IOException {
+        if (DISABLED) {
+            return null;
+        }
+        int validity = getValidity(cloud);
+        KubernetesClient client = cloud.connect();
+        PodCache cache = caches.compute(cloud.name, (name, existing) -> {
+            if (existing != null && existing.validity == validity && existing.isUsing(client)) {
+                return existing;
+            }
+            if (existing != null) {
+                LOGGER.log(Level.FINE, "Configuration of cloud {0} changed, replacing pod cache", name);
+                existing.stop();
+            }
+            return new PodCache(name, validity);
+        });
+        cache.start(cloud, client);
+        return cache;
+    }
+
+    static int getValidity(KubernetesCloud cloud) {
+        return Objects.hash(cloud.getServerUrl(), cloud.getNamespace(), cloud.getServerCertificate(),
+                cloud.getCredentialsId(), cloud.isSkipTlsVerify(), cloud.isUseJenkinsProxy(), cloud.getPodLabelsMap());
+    }
+
+    /**
+     * @return false if the informer was started with another client, which has been replaced since and will be closed.
+     */
+    private boolean isUsing(KubernetesClient client) {
+        KubernetesClient c = this.client;
+        return c == null || c == client;
+    }
+
+    synchronized void start(KubernetesCloud cloud, KubernetesClient client) {
+        if (informer != null || stopped || System.currentTimeMillis() < nextStartAttempt) {
+            return;
+        }
+        String namespace = StringUtils.defaultIfEmpty(cloud.getNamespace(), client.getNamespace());
+        OperationContext context = new OperationContext()
+                .withNamespace(namespace)
+                .withLabels(cloud.getPodLabelsMap());
+        try {
+            factory = client.informers();
+            informer = factory.sharedIndexInformerFor(Pod.class, PodList.class, context, RESYNC_PERIOD);
+            informer.addEventHandler(this);
+            factory.startAllRegisteredInformers();
+        } catch (RuntimeException e) {
+            // Callers list pods from the API server until the informer can be started
+            long delay = Math.min(START_RETRY_DELAY << Math.min(startFailures, 20), MAX_START_RETRY_DELAY);
+            nextStartAttempt = System.currentTimeMillis() + delay;
+            if (startFailures++ == 0) {
+                LOGGER.log(Level.WARNING, "Failed to start pod informer for cloud " + cloudName + ", retrying in " + delay + "ms", e);
+            } else {
+                LOGGER.log(Level.WARNING, "Failed to start pod informer for cloud {0} again, retrying in {1}ms: {2}",
+                        new Object[] {cloudName, delay, e.toString()});
+            }
+            factory = null;
+            informer = null;
+            return;
+        }
+        startFailures = 0;
+        this.namespace = namespace;
+        this.client = client;
+        LOGGER.log(Level.FINE, "Started pod informer for cloud {0} in namespace {1}", new Object[] {cloudName, namespace});
+    }
+
+    private synchronized void stop() {
+        stopped = true;
+        if (factory != null) {
+            factory.stopAllRegisteredInformers();
+            LOGGER.log(Level.FINE, "Stopped pod informer for cloud {0}", cloudName);
+        }
+        factory = null;
+        informer = null;
+        pods.clear();
+        index = new PodLabelIndex();
+    }
+
+    boolean hasSynced() {
+        SharedIndexInformer<Pod> i = informer;
+        return !stopped && i != null && i.hasSynced();
+    }
+
+    /**
+     * @return milliseconds since the informer last delivered an event, including resyncs.
+     */
+    long getStaleness() {
+        return System.currentTimeMillis() - lastEventTimestamp;
+    }
+
+    @Nonnull
+    PodLabelIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public void onAdd(Pod pod) {
+        lastEventTimestamp = System.currentTimeMillis();
+        put(pod);
+    }
+
+    @Override
+    public void onUpdate(Pod oldPod, Pod newPod) {
+        lastEventTimestamp = System.currentTimeMillis();
+        put(newPod);
+    }
+
+    private void put(Pod pod) {
+        String name = pod.getMetadata().getName();
+        Pod old = pods.put(name, pod);
+        // Events are delivered one at a time, so the index is updated consistently with the pods map
+        if (old != null && KubernetesCloud.isRunningOrPending(old)) {
+            index.remove(old);
+        }
+        if (KubernetesCloud.isRunningOrPending(pod)) {
+            index.add(pod);
+        }
+        // The pod is now counted here, no need to keep its slot reserved
+        CapacityLedger.get(cloudName).release(name);
+    }
+
+    @Override
+    public void onDelete(Pod pod, boolean deletedFinalStateUnknown) {
+        lastEventTimestamp = System.currentTimeMillis();
+        Pod old = pods.remove(pod.getMetadata().getName());
+        if (old != null && KubernetesCloud.isRunningOrPending(old)) {
+            index.remove(old);
+        }
+    }
+
+    private static void stopAll(Collection<String> cloudNames) {
+        for (String cloudName : cloudNames) {
+            PodCache cache = caches.remove(cloudName);
+            if (cache != null) {
+                cache.stop();
+            }
+        }
+    }
+
+    /**
+     * Stops the informers of clouds that have been removed.
+     */
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Jenkins) {
+                Set<String> removed = new HashSet<>(caches.keySet());
+                for (KubernetesCloud cloud : ((Jenkins) o).clouds.getAll(KubernetesCloud.class)) {
+                    removed.remove(cloud.name);
+                }
+                stopAll(removed);
+            }
+            super.onChange(o, file);
+        }
+    }
+
+    @Extension
+    public static class ShutdownListener extends ItemListener {
+        @Override
+        public void onBeforeShutdown() {
+            stopAll(new HashSet<>(caches.keySet()));
+        }
+    }
+}
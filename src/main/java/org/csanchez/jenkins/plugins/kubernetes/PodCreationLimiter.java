@@ -0,0 +1,163 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+
+import jenkins.metrics.api.Metrics;
+import jenkins.util.Timer;
+
+/**
+ * Limits the rate at which the pods of a {@link KubernetesCloud} are created.
+ * <p>
+ * A token bucket allows bursts of {@link #BURST} pod creations and refills at {@link #QPS} tokens per second. Launches
+ * that find the bucket empty wait in a queue per template, and tokens are handed out to these queues in turn, so that a
+ * spike of builds for one template does not starve the others. This keeps queue spikes from tripping API server
+ * priority and fairness limits, admission webhooks and resource quota conflicts.
+ */
+public final class PodCreationLimiter {
+
+    private static final Logger LOGGER = Logger.getLogger(PodCreationLimiter.class.getName());
+
+    /**
+     * Pod creations per second allowed for each cloud once the burst is used up. Zero or less disables the limiter.
+     */
+    private static final int QPS = Integer.getInteger(PodCreationLimiter.class.getName() + ".qps", 10);
+
+    /**
+     * Pod creations allowed at once for each cloud.
+     */
+    private static final int BURST = Integer.getInteger(PodCreationLimiter.class.getName() + ".burst", 20);
+
+    /**
+     * Limiters indexed by cloud name
+     */
+    private static final Map<String, PodCreationLimiter> limiters = new ConcurrentHashMap<>();
+
+    private final double tokensPerMilli;
+    private final int burst;
+    private final LongSupplier clock;
+
+    private double tokens;
+    private long lastRefill;
+    /**
+     * Waiting launches by template, in the order templates get their next token.
+     */
+    private final Map<String, ArrayDeque<CompletableFuture<Void>>> queues = new LinkedHashMap<>();
+    private int queued;
+    private boolean drainScheduled;
+
+    @VisibleForTesting
+    PodCreationLimiter(int qps, int burst, LongSupplier clock) {
+        this.tokensPerMilli = qps / 1000.0;
+        this.burst = Math.max(1, burst);
+        this.clock = clock;
+        this.tokens = this.burst;
+        this.lastRefill = clock.getAsLong();
+    }
+
+    @Nonnull
+    public static PodCreationLimiter get(@Nonnull String cloudName) {
+        return limiters.computeIfAbsent(cloudName, name -> {
+            PodCreationLimiter limiter = new PodCreationLimiter(QPS, BURST, System::currentTimeMillis);
+            MetricRegistry registry = Metrics.metricRegistry();
+            String gauge = MetricNames.metricNameForPodCreationQueue(name);
+            registry.remove(gauge);
+            registry.register(gauge, (Gauge<Integer>) limiter::getQueued);
+            return limiter;
+        });
+    }
+
+    /**
+     * Waits for the permission to create a pod.
+     *
+     * @param templateKey the template the pod is created from, queues are served in turn
+     * @return a future completed once the pod can be created
+     */
+    @Nonnull
+    public CompletableFuture<Void> acquire(@Nonnull String templateKey) {
+        if (tokensPerMilli <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        synchronized (this) {
+            refill();
+            if (queued == 0 && tokens >= 1) {
+                tokens--;
+                permit.complete(null);
+                return permit;
+            }
+            queues.computeIfAbsent(templateKey, k -> new ArrayDeque<>()).add(permit);
+            queued++;
+            scheduleDrain();
+        }
+        LOGGER.log(Level.FINE, "Pod creation for template {0} throttled, {1} waiting", new Object[] {templateKey, getQueued()});
+        return permit;
+    }
+
+    /**
+     * @return the number of launches waiting for a pod creation token.
+     */
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    @VisibleForTesting
+    void drain() {
+        List<CompletableFuture<Void>> granted = new ArrayList<>();
+        synchronized (this) {
+            drainScheduled = false;
+            refill();
+            while (queued > 0 && tokens >= 1) {
+                Iterator<Map.Entry<String, ArrayDeque<CompletableFuture<Void>>>> it = queues.entrySet().iterator();
+                Map.Entry<String, ArrayDeque<CompletableFuture<Void>>> next = it.next();
+                it.remove();
+                CompletableFuture<Void> permit = next.getValue().poll();
+                queued--;
+                if (!next.getValue().isEmpty()) {
+                    // back of the line for this template
+                    queues.put(next.getKey(), next.getValue());
+                }
+                if (permit != null && !permit.isDone()) {
+                    tokens--;
+                    granted.add(permit);
+                }
+            }
+            if (queued > 0) {
+                scheduleDrain();
+            }
+        }
+        // completed out of the lock, as dependent stages may run synchronously
+        granted.forEach(permit -> permit.complete(null));
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerMilli);
+        lastRefill = now;
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled) {
+            return;
+        }
+        drainScheduled = true;
+        long delay = (long) Math.ceil((1 - tokens) / tokensPerMilli);
+        Timer.get().schedule(this::drain, Math.max(1, delay), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,346 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.EventList;
+import io.fabric8.kubernetes.api.model.ObjectReference;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.base.OperationContext;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.SharedInformerFactory;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+
+/**
+ * Single informer on the pod events of a namespace, shared by all the agents of a cloud being launched there.
+ * <p>
+ * Events are dispatched to the {@link Watcher}s subscribed for the pod they involve, typically a
+ * {@link TaskListenerEventWatcher} for the duration of the launch, instead of opening one event watch per pod.
+ * The informer is started with the first subscription and stopped once it had no subscriber for a while.
+ */
+public class PodEventInformer implements ResourceEventHandler<Event> {
+
+    private static final Logger LOGGER = Logger.getLogger(PodEventInformer.class.getName());
+
+    /**
+     * Time in milliseconds an informer without subscriber is kept running, so that bursts of launches share it.
+     */
+    private static final long IDLE_TIMEOUT = Long.getLong(PodEventInformer.class.getName() + ".idleTimeout",
+            TimeUnit.MINUTES.toMillis(5));
+
+    /**
+     * Disables the shared informer, one event watch is then opened per launching pod.
+     */
+    private static final boolean DISABLED = Boolean.getBoolean(PodEventInformer.class.getName() + ".disabled");
+
+    /**
+     * Initial delay in milliseconds before starting an informer again after it failed to start, doubled on every
+     * failure.
+     */
+    private static final long START_RETRY_DELAY = Long.getLong(PodEventInformer.class.getName() + ".startRetryDelay",
+            TimeUnit.SECONDS.toMillis(10));
+
+    private static final long MAX_START_RETRY_DELAY = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Index of the events by the name of the pod they involve.
+     */
+    static final String POD_NAME_INDEX = "involvedObject.name";
+
+    /**
+     * Informers indexed by cloud name and namespace.
+     */
+    private static final Map<String, PodEventInformer> informers = new ConcurrentHashMap<>();
+
+    private final String cloudName;
+    private final String namespace;
+    private final int validity;
+    private final Map<String, List<Watcher<Event>>> subscribers = new ConcurrentHashMap<>();
+
+    @CheckForNull
+    private volatile KubernetesClient client;
+    @CheckForNull
+    private SharedInformerFactory factory;
+    @CheckForNull
+    private SharedIndexInformer<Event> informer;
+    private volatile boolean stopped;
+    private long idleSince = System.currentTimeMillis();
+    private int startFailures;
+    private long nextStartAttempt;
+
+    PodEventInformer(String cloudName, String namespace, int validity) {
+        this.cloudName = cloudName;
+        this.namespace = namespace;
+        this.validity = validity;
+    }
+
+    /**
+     * Dispatches the events involving the given pod to the given watcher until the returned watch is closed.
+     *
+     * @param cloud the cloud the pod is launched by
+     * @param client a client connected to the cloud
+     * @param namespace the namespace of the pod
+     * @param podName the name of the pod
+     * @param watcher the watcher to dispatch events to
+     * @return the subscription, or {@code null} if the shared informer could not be used
+     */
+    @CheckForNull
+    public static Watch subscribe(@Nonnull KubernetesCloud cloud, @Nonnull KubernetesClient client, @Nonnull String namespace,
+            @Nonnull String podName, @Nonnull Watcher<Event> watcher) {
+        if (DISABLED) {
+            return null;
+        }
+        int validity = PodCache.getValidity(cloud);
+        while (true) {
+            PodEventInformer informer = informers.compute(cloud.name + '/' + namespace, (key, existing) -> {
+                if (existing != null && existing.validity == validity && existing.isUsing(client)) {
+                    return existing;
+                }
+                if (existing != null) {
+                    existing.stop();
+                }
+                return new PodEventInformer(cloud.name, namespace, validity);
+            });
+            // null if the informer was stopped concurrently, in which case another one is created
+            Watch subscription = informer.add(client, podName, watcher);
+            if (subscription != null) {
+                return subscription;
+            }
+            if (!informer.stopped) {
+                return null;
+            }
+        }
+    }
+
+    @CheckForNull
+    private synchronized Watch add(KubernetesClient client, String podName, Watcher<Event> watcher) {
+        if (stopped) {
+            return null;
+        }
+        if (factory == null && !start(client)) {
+            return null;
+        }
+        return register(podName, watcher);
+    }
+
+    @Nonnull
+    synchronized Watch register(String podName, Watcher<Event> watcher) {
+        subscribers.computeIfAbsent(podName, k -> new CopyOnWriteArrayList<>()).add(watcher);
+        return () -> remove(podName, watcher);
+    }
+
+    private synchronized void remove(String podName, Watcher<Event> watcher) {
+        subscribers.computeIfPresent(podName, (k, watchers) -> {
+            watchers.remove(watcher);
+            return watchers.isEmpty() ? null : watchers;
+        });
+        if (subscribers.isEmpty()) {
+            idleSince = System.currentTimeMillis();
+            Timer.get().schedule(this::stopIfIdle, IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+        watcher.onClose(null);
+    }
+
+    /**
+     * @return false if the informer was started with another client, which has been replaced since and will be closed.
+     */
+    private boolean isUsing(KubernetesClient client) {
+        KubernetesClient c = this.client;
+        return c == null || c == client;
+    }
+
+    @VisibleForTesting
+    synchronized boolean start(KubernetesClient client) {
+        if (System.currentTimeMillis() < nextStartAttempt) {
+            return false;
+        }
+        try {
+            OperationContext context = new OperationContext()
+                    .withNamespace(namespace)
+                    .withFields(Collections.singletonMap("involvedObject.kind", "Pod"));
+            SharedInformerFactory factory = client.informers();
+            SharedIndexInformer<Event> informer = factory.sharedIndexInformerFor(Event.class, EventList.class, context, 0);
+            informer.addIndexers(Collections.singletonMap(POD_NAME_INDEX, PodEventInformer::podNameIndex));
+            informer.addEventHandler(this);
+            factory.startAllRegisteredInformers();
+            this.factory = factory;
+            this.informer = informer;
+            this.client = client;
+            startFailures = 0;
+            LOGGER.log(Level.FINE, "Started event informer for cloud {0} in namespace {1}", new Object[] {cloudName, namespace});
+            return true;
+        } catch (RuntimeException e) {
+            // Launches watch the events of their pod until the informer can be started
+            long delay = Math.min(START_RETRY_DELAY << Math.min(startFailures, 20), MAX_START_RETRY_DELAY);
+            nextStartAttempt = System.currentTimeMillis() + delay;
+            if (startFailures++ == 0) {
+                LOGGER.log(Level.WARNING, "Failed to start event informer for cloud " + cloudName + " in namespace "
+                        + namespace + ", retrying in " + delay + "ms", e);
+            } else {
+                LOGGER.log(Level.FINE, "Failed to start event informer for cloud {0} in namespace {1} again, retrying in {2}ms: {3}",
+                        new Object[] {cloudName, namespace, delay, e.toString()});
+            }
+            return false;
+        }
+    }
+
+    private synchronized void stopIfIdle() {
+        if (subscribers.isEmpty() && idleSince + IDLE_TIMEOUT <= System.currentTimeMillis()) {
+            informers.remove(cloudName + '/' + namespace, this);
+            stop();
+        }
+    }
+
+    private synchronized void stop() {
+        stopped = true;
+        if (factory != null) {
+            factory.stopAllRegisteredInformers();
+            LOGGER.log(Level.FINE, "Stopped event informer for cloud {0} in namespace {1}", new Object[] {cloudName, namespace});
+        }
+        factory = null;
+        informer = null;
+    }
+
+    static List<String> podNameIndex(Event event) {
+        ObjectReference involvedObject = event.getInvolvedObject();
+        if (involvedObject == null || involvedObject.getName() == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(involvedObject.getName());
+    }
+
+    /**
+     * Looks up the events involving a pod without calling the API server.
+     *
+     * @param cloud the cloud the pod was started by
+     * @param namespace the namespace of the pod
+     * @param podName the name of the pod
+     * @param podUid the uid of the pod, to leave out the events of a previous pod with the same name
+     * @return the events involving the pod, or {@code null} if no informer watches events in that namespace.
+     */
+    @CheckForNull
+    static List<Event> getEvents(@Nonnull KubernetesCloud cloud, @Nonnull String namespace, @Nonnull String podName,
+            @CheckForNull String podUid) {
+        PodEventInformer informer = informers.get(cloud.name + '/' + namespace);
+        if (informer == null || informer.validity != PodCache.getValidity(cloud)) {
+            return null;
+        }
+        return informer.getEvents(podName, podUid);
+    }
+
+    @CheckForNull
+    private synchronized List<Event> getEvents(String podName, @CheckForNull String podUid) {
+        if (stopped || informer == null || !informer.hasSynced()) {
+            return null;
+        }
+        List<Event> events = new ArrayList<>();
+        for (Event event : informer.getIndexer().byIndex(POD_NAME_INDEX, podName)) {
+            if (podUid == null || podUid.equals(event.getInvolvedObject().getUid())) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    @Override
+    public void onAdd(Event event) {
+        dispatch(Watcher.Action.ADDED, event);
+    }
+
+    @Override
+    public void onUpdate(Event oldEvent, Event newEvent) {
+        if (Objects.equals(oldEvent.getMetadata().getResourceVersion(), newEvent.getMetadata().getResourceVersion())) {
+            // resync
+            return;
+        }
+        dispatch(Watcher.Action.MODIFIED, newEvent);
+    }
+
+    @Override
+    public void onDelete(Event event, boolean deletedFinalStateUnknown) {
+        // Events expiring are of no interest to launching agents
+    }
+
+    void dispatch(Watcher.Action action, Event event) {
+        ObjectReference involvedObject = event.getInvolvedObject();
+        if (involvedObject == null || involvedObject.getName() == null) {
+            return;
+        }
+        List<Watcher<Event>> watchers = subscribers.get(involvedObject.getName());
+        if (watchers != null) {
+            for (Watcher<Event> watcher : watchers) {
+                try {
+                    watcher.eventReceived(action, event);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to dispatch event for pod " + involvedObject.getName(), e);
+                }
+            }
+        }
+    }
+
+    private static void stopAll(Set<String> keys) {
+        for (String key : keys) {
+            PodEventInformer informer = informers.remove(key);
+            if (informer != null) {
+                informer.stop();
+            }
+        }
+    }
+
+    /**
+     * Stops the informers of clouds that have been removed.
+     */
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Jenkins) {
+                Set<String> removed = new HashSet<>();
+                Set<String> cloudNames = new HashSet<>();
+                for (KubernetesCloud cloud : ((Jenkins) o).clouds.getAll(KubernetesCloud.class)) {
+                    cloudNames.add(cloud.name);
+                }
+                informers.forEach((key, informer) -> {
+                    if (!cloudNames.contains(informer.cloudName)) {
+                        removed.add(key);
+                    }
+                });
+                stopAll(removed);
+            }
+            super.onChange(o, file);
+        }
+    }
+
+    @Extension
+    public static class ShutdownListener extends ItemListener {
+        @Override
+        public void onBeforeShutdown() {
+            stopAll(new HashSet<>(informers.keySet()));
+        }
+    }
+}
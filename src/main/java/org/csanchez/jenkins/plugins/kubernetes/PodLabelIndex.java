@@ -0,0 +1,92 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import io.fabric8.kubernetes.api.model.Pod;
+
+/**
+ * Counts of agent pods, indexed by the template labels ({@link PodTemplate#getLabelsMap()}) they carry.
+ * <p>
+ * Kept up to date incrementally by the {@link PodCache} as pods appear and disappear, so that the instance cap of a
+ * template is checked in constant time instead of filtering every pod for every candidate template.
+ */
+public class PodLabelIndex {
+
+    private static final String LABEL = "jenkins/label";
+    private static final String LABEL_DIGEST = "jenkins/label-digest";
+
+    private final AtomicInteger total = new AtomicInteger();
+    private final Map<String, AtomicInteger> byTemplateLabels = new ConcurrentHashMap<>();
+
+    /**
+     * Builds an index of the given pods.
+     *
+     * @param pods the pods to count
+     * @return a new index
+     */
+    @Nonnull
+    public static PodLabelIndex of(@Nonnull Collection<Pod> pods) {
+        PodLabelIndex index = new PodLabelIndex();
+        pods.forEach(index::add);
+        return index;
+    }
+
+    void add(@Nonnull Pod pod) {
+        total.incrementAndGet();
+        String key = key(pod);
+        if (key != null) {
+            byTemplateLabels.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    void remove(@Nonnull Pod pod) {
+        total.decrementAndGet();
+        String key = key(pod);
+        if (key != null) {
+            AtomicInteger counter = byTemplateLabels.get(key);
+            if (counter != null) {
+                counter.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return the number of indexed pods.
+     */
+    public int count() {
+        return total.get();
+    }
+
+    /**
+     * @param template the pod template
+     * @return the number of indexed pods carrying all labels of the given template.
+     */
+    public int count(@Nonnull PodTemplate template) {
+        AtomicInteger counter = byTemplateLabels.get(key(template.getLabelsMap()));
+        return counter == null ? 0 : counter.get();
+    }
+
+    @CheckForNull
+    private static String key(Pod pod) {
+        if (pod.getMetadata() == null || pod.getMetadata().getLabels() == null) {
+            return null;
+        }
+        return key(pod.getMetadata().getLabels());
+    }
+
+    @CheckForNull
+    private static String key(Map<String, String> labels) {
+        String digest = labels.get(LABEL_DIGEST);
+        String label = labels.get(LABEL);
+        if (digest == null || label == null) {
+            return null;
+        }
+        return label + '/' + digest;
+    }
+}
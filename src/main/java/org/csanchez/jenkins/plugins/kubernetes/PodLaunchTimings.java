@@ -0,0 +1,226 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import hudson.Util;
+import io.fabric8.kubernetes.api.model.ContainerStatus;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodCondition;
+import io.fabric8.kubernetes.api.model.PodStatus;
+import jenkins.metrics.api.Metrics;
+
+/**
+ * Time spent in each phase of the launch of an agent pod.
+ * <p>
+ * Phases happening in Kubernetes are measured from the pod creation timestamp, the pod conditions and the
+ * {@code startedAt} timestamp of the containers. The others are measured with the Jenkins clock.
+ */
+@ExportedBean
+public class PodLaunchTimings implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Phase {
+        /** From the agent being planned to the pod being created. */
+        PROVISION("Provisioning"),
+        /** From the pod being created to it being scheduled on a node. */
+        SCHEDULE("Scheduling"),
+        /** From the pod being scheduled to its last container being started, which is mostly pulling images. */
+        PULL("Image pull"),
+        /** From the last container being started to all containers being ready. */
+        START("Container start"),
+        /** From all containers being ready to the agent being online. */
+        CONNECT("Agent connection");
+
+        private final String displayName;
+
+        Phase(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        String getMetricName() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    private final String agentName;
+    private final String templateName;
+    private final EnumMap<Phase, Long> durations = new EnumMap<>(Phase.class);
+
+    public PodLaunchTimings(@Nonnull String agentName, @CheckForNull String templateName) {
+        this.agentName = agentName;
+        this.templateName = templateName;
+    }
+
+    @Exported
+    public String getAgentName() {
+        return agentName;
+    }
+
+    @Exported
+    @CheckForNull
+    public String getTemplateName() {
+        return templateName;
+    }
+
+    /**
+     * @param phase the launch phase
+     * @return the time spent in the given phase in milliseconds, or {@code null} if it could not be measured.
+     */
+    @CheckForNull
+    public synchronized Long get(@Nonnull Phase phase) {
+        return durations.get(phase);
+    }
+
+    @Exported(name = "durations")
+    public synchronized Map<Phase, Long> getDurations() {
+        return new EnumMap<>(durations);
+    }
+
+    /**
+     * @return the total time of the measured phases, in milliseconds.
+     */
+    @Exported
+    public synchronized long getTotal() {
+        return durations.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * @param phase the launch phase
+     * @return the time spent in the given phase, formatted for display.
+     */
+    @Nonnull
+    public String getDurationString(@Nonnull Phase phase) {
+        Long millis = get(phase);
+        return millis == null ? "-" : Util.getTimeSpanString(millis);
+    }
+
+    @Nonnull
+    public String getTotalString() {
+        return Util.getTimeSpanString(getTotal());
+    }
+
+    synchronized void set(@Nonnull Phase phase, long millis) {
+        if (millis >= 0) {
+            durations.put(phase, millis);
+        }
+    }
+
+    /**
+     * Measures the phases happening in Kubernetes, once all containers of the pod are ready.
+     *
+     * @param pod the pod with all containers ready
+     */
+    void measure(@Nonnull Pod pod) {
+        Instant created = parse(pod.getMetadata().getCreationTimestamp());
+        PodStatus status = pod.getStatus();
+        if (status == null) {
+            return;
+        }
+        Instant scheduled = getConditionTime(status, "PodScheduled");
+        Instant ready = getConditionTime(status, "ContainersReady");
+        if (ready == null) {
+            ready = getConditionTime(status, "Ready");
+        }
+        Instant started = getLastStartedAt(status.getContainerStatuses());
+        set(Phase.SCHEDULE, between(created, scheduled));
+        set(Phase.PULL, between(scheduled, started));
+        set(Phase.START, between(started, ready));
+    }
+
+    /**
+     * Records the measured phases in the per cloud metrics, and in the per template metrics for templates defined in
+     * the cloud configuration.
+     */
+    void record(@Nonnull KubernetesCloud cloud, @Nonnull PodTemplate template) {
+        boolean staticTemplate = isStaticTemplate(cloud, template);
+        getDurations().forEach((phase, millis) -> {
+            Metrics.metricRegistry().timer(MetricNames.metricNameForLaunchPhase(cloud.name, phase.getMetricName()))
+                    .update(millis, TimeUnit.MILLISECONDS);
+            if (staticTemplate) {
+                Metrics.metricRegistry().timer(MetricNames.metricNameForLaunchPhase(cloud.name, template.getName(), phase.getMetricName()))
+                        .update(millis, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    /**
+     * Agents carry a copy of their template, unwrapped from its parents, which keeps the id of the original template.
+     */
+    static boolean isStaticTemplate(@Nonnull KubernetesCloud cloud, @Nonnull PodTemplate template) {
+        for (PodTemplate t : cloud.getTemplates()) {
+            if (t.getId().equals(template.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @CheckForNull
+    private static Instant getConditionTime(PodStatus status, String type) {
+        List<PodCondition> conditions = status.getConditions();
+        if (conditions == null) {
+            return null;
+        }
+        for (PodCondition condition : conditions) {
+            if (type.equals(condition.getType()) && "True".equals(condition.getStatus())) {
+                return parse(condition.getLastTransitionTime());
+            }
+        }
+        return null;
+    }
+
+    @CheckForNull
+    private static Instant getLastStartedAt(@CheckForNull List<ContainerStatus> containerStatuses) {
+        Instant last = null;
+        if (containerStatuses != null) {
+            for (ContainerStatus containerStatus : containerStatuses) {
+                if (containerStatus.getState() != null && containerStatus.getState().getRunning() != null) {
+                    Instant startedAt = parse(containerStatus.getState().getRunning().getStartedAt());
+                    if (startedAt != null && (last == null || startedAt.isAfter(last))) {
+                        last = startedAt;
+                    }
+                }
+            }
+        }
+        return last;
+    }
+
+    private static long between(@CheckForNull Instant from, @CheckForNull Instant to) {
+        return from == null || to == null ? -1 : to.toEpochMilli() - from.toEpochMilli();
+    }
+
+    @CheckForNull
+    private static Instant parse(@CheckForNull String timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+        try {
+            return Instant.parse(timestamp);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return durations.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import hudson.BulkChange;
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+
+/**
+ * Launch timings of the Kubernetes agents a build ran on, so that slow launches can be traced to a phase.
+ *
+ * @see PodLaunchTimings
+ */
+@ExportedBean
+public class PodLaunchTimingsAction extends InvisibleAction {
+
+    private final List<PodLaunchTimings> launches = new ArrayList<>();
+
+    @Exported
+    public synchronized List<PodLaunchTimings> getLaunches() {
+        return new ArrayList<>(launches);
+    }
+
+    public PodLaunchTimings.Phase[] getPhases() {
+        return PodLaunchTimings.Phase.values();
+    }
+
+    /**
+     * Adds the timings of an agent launch to the given build.
+     *
+     * @param run the build running on the agent
+     * @param timings the timings of the agent launch
+     */
+    static void add(@Nonnull Run<?, ?> run, @Nonnull PodLaunchTimings timings) throws IOException {
+        synchronized (run) {
+            BulkChange bc = new BulkChange(run);
+            try {
+                PodLaunchTimingsAction action = run.getAction(PodLaunchTimingsAction.class);
+                if (action == null) {
+                    action = new PodLaunchTimingsAction();
+                    run.addAction(action);
+                }
+                synchronized (action) {
+                    action.launches.add(timings);
+                }
+                bc.commit();
+            } finally {
+                bc.abort();
+            }
+        }
+    }
+}
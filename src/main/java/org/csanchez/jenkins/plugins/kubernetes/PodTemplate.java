@@ -111,10 +111,18 @@ public class PodTemplate extends AbstractDescribableImpl<PodTemplate> implements
 
     private int idleMinutes;
 
+    private int warmPoolSize;
+
     private int activeDeadlineSeconds;
 
     private String label;
 
+    /**
+     * {@link #label} parsed once, as it is matched for every queue item.
+     */
+    @CheckForNull
+    private transient Set<LabelAtom> labelSet;
+
     private String serviceAccount;
 
     private String nodeSelector;
@@ -320,6 +328,20 @@ public class PodTemplate extends AbstractDescribableImpl<PodTemplate> implements
         return instanceCap;
     }
 
+    /**
+     * Sets the number of idle agents kept started ahead of demand for this template.
+     *
+     * @param warmPoolSize the number of agents to keep ready, 0 to disable the warm pool
+     */
+    @DataBoundSetter
+    public void setWarmPoolSize(int warmPoolSize) {
+        this.warmPoolSize = Math.max(0, warmPoolSize);
+    }
+
+    public int getWarmPoolSize() {
+        return warmPoolSize;
+    }
+
     @DataBoundSetter
     public void setSlaveConnectTimeout(int slaveConnectTimeout) {
         if (slaveConnectTimeout <= 0) {
@@ -420,8 +442,16 @@ public class PodTemplate extends AbstractDescribableImpl<PodTemplate> implements
         }
     }
 
+    /**
+     * @return the immutable set of label atoms of this template.
+     */
     public Set<LabelAtom> getLabelSet() {
-        return Label.parse(label);
+        Set<LabelAtom> labelSet = this.labelSet;
+        if (labelSet == null) {
+            labelSet = Collections.unmodifiableSet(Label.parse(label));
+            this.labelSet = labelSet;
+        }
+        return labelSet;
     }
 
     public Map<String, String> getLabelsMap() {
@@ -455,6 +485,7 @@ public class PodTemplate extends AbstractDescribableImpl<PodTemplate> implements
     @DataBoundSetter
     public void setLabel(String label) {
         this.label = Util.fixEmptyAndTrim(label);
+        this.labelSet = null;
     }
 
     public String getLabel() {
@@ -999,6 +1030,7 @@ public class PodTemplate extends AbstractDescribableImpl<PodTemplate> implements
                 (instanceCap == Integer.MAX_VALUE ? "" : ", instanceCap=" + instanceCap) +
                 (slaveConnectTimeout == DEFAULT_SLAVE_JENKINS_CONNECTION_TIMEOUT ? "" : ", slaveConnectTimeout=" + slaveConnectTimeout) +
                 (idleMinutes == 0 ? "" : ", idleMinutes=" + idleMinutes) +
+                (warmPoolSize == 0 ? "" : ", warmPoolSize=" + warmPoolSize) +
                 (activeDeadlineSeconds == 0 ? "" : ", activeDeadlineSeconds=" + activeDeadlineSeconds) +
                 (label == null ? "" : ", label='" + label + '\'') +
                 (serviceAccount == null ? "" : ", serviceAccount='" + serviceAccount + '\'') +
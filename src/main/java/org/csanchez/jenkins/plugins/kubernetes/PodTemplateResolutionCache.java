@@ -0,0 +1,133 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.csanchez.jenkins.plugins.kubernetes.pipeline.PodTemplateMap;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.XmlFile;
+import hudson.model.Label;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import jenkins.model.Jenkins;
+
+/**
+ * Memoizes the {@link PodTemplate}s a {@link KubernetesCloud} resolves for a given {@link Label}.
+ * <p>
+ * {@link KubernetesCloud#canProvision} and {@link KubernetesCloud#getTemplatesFor} are called for every queue item and
+ * every cloud, while templates rarely change. Results are kept per cloud until the global version is bumped through
+ * {@link #invalidate()}, which happens when the Jenkins configuration is saved, when the static templates of a cloud
+ * are modified and when dynamic templates are added to or removed from
+ * {@link org.csanchez.jenkins.plugins.kubernetes.pipeline.PodTemplateMap}.
+ * <p>
+ * Other {@link PodTemplateSource} and {@link PodTemplateFilter} implementations may change their output without notice,
+ * so nothing is memoized while any is registered.
+ */
+@Restricted(NoExternalUse.class)
+public final class PodTemplateResolutionCache {
+
+    /**
+     * Disables the cache, templates are then resolved on every call.
+     */
+    private static final boolean DISABLED = Boolean.getBoolean(PodTemplateResolutionCache.class.getName() + ".disabled");
+
+    /**
+     * Implementations whose output only changes along with the templates, as tracked by {@link #invalidate()}.
+     */
+    private static final Set<Class<?>> BUILT_IN_EXTENSIONS = new HashSet<>(Arrays.asList(
+            KubernetesCloud.PodTemplateSourceImpl.class,
+            PodTemplateMap.PodTemplateSourceImpl.class,
+            PodTemplateLabelFilter.class));
+
+    private static final AtomicLong VERSION = new AtomicLong();
+
+    /**
+     * Key used for the {@code null} label, which is not a valid label expression.
+     */
+    private static final String NO_LABEL = "";
+
+    private final long version = VERSION.get();
+    private final Map<String, List<PodTemplate>> templatesFor = new ConcurrentHashMap<>();
+    private final Map<String, Optional<PodTemplate>> templateFor = new ConcurrentHashMap<>();
+
+    PodTemplateResolutionCache() {
+    }
+
+    /**
+     * Discards all memoized resolutions. To be called after the templates have been modified.
+     */
+    public static void invalidate() {
+        VERSION.incrementAndGet();
+    }
+
+    /**
+     * @return true if no template modification happened since this cache was created.
+     */
+    boolean isCurrent() {
+        return version == VERSION.get();
+    }
+
+    /**
+     * @return true if only the template sources and filters of this plugin are registered.
+     */
+    static boolean hasOnlyBuiltInExtensions() {
+        for (PodTemplateSource source : ExtensionList.lookup(PodTemplateSource.class)) {
+            if (!BUILT_IN_EXTENSIONS.contains(source.getClass())) {
+                return false;
+            }
+        }
+        for (PodTemplateFilter filter : PodTemplateFilter.all()) {
+            if (!BUILT_IN_EXTENSIONS.contains(filter.getClass())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nonnull
+    List<PodTemplate> getTemplatesFor(@CheckForNull Label label, @Nonnull Function<Label, List<PodTemplate>> resolver) {
+        if (DISABLED || !hasOnlyBuiltInExtensions()) {
+            return resolver.apply(label);
+        }
+        return templatesFor.computeIfAbsent(key(label), k -> Collections.unmodifiableList(new ArrayList<>(resolver.apply(label))));
+    }
+
+    @CheckForNull
+    PodTemplate getTemplate(@CheckForNull Label label, @Nonnull Function<Label, PodTemplate> resolver) {
+        if (DISABLED || !hasOnlyBuiltInExtensions()) {
+            return resolver.apply(label);
+        }
+        return templateFor.computeIfAbsent(key(label), k -> Optional.ofNullable(resolver.apply(label))).orElse(null);
+    }
+
+    private static String key(@CheckForNull Label label) {
+        return label == null ? NO_LABEL : label.getExpression();
+    }
+
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Jenkins) {
+                invalidate();
+            }
+            super.onChange(o, file);
+        }
+    }
+}
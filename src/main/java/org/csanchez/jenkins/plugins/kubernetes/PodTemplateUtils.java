@@ -426,6 +426,9 @@ public class PodTemplateUtils {
         podTemplate.setActiveDeadlineSeconds(template.getActiveDeadlineSeconds() != 0 ?
                                              template.getActiveDeadlineSeconds() : parent.getActiveDeadlineSeconds());
 
+        podTemplate.setWarmPoolSize(template.getWarmPoolSize() != 0 ?
+                                    template.getWarmPoolSize() : parent.getWarmPoolSize());
+
 
         podTemplate.setServiceAccount(!Strings.isNullOrEmpty(template.getServiceAccount()) ?
                                       template.getServiceAccount() : parent.getServiceAccount());
@@ -0,0 +1,99 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import jenkins.metrics.api.Metrics;
+import jenkins.security.ImpersonatingExecutorService;
+
+/**
+ * Deletes the pods of terminated agents in the background.
+ * <p>
+ * When a large parallel build completes, many agents are terminated at once by their retention strategies. Their pods
+ * are deleted on a bounded executor, so that the threads terminating agents are not held by the Kubernetes API, while
+ * the nodes are removed right away.
+ */
+final class PodTerminator {
+
+    private static final Logger LOGGER = Logger.getLogger(PodTerminator.class.getName());
+
+    /**
+     * Maximum number of pods deleted concurrently.
+     */
+    private static final int THREADS = Integer.getInteger(PodTerminator.class.getName() + ".threads", 10);
+
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private static final AtomicInteger pending = new AtomicInteger();
+
+    private static final AtomicBoolean gaugeRegistered = new AtomicBoolean();
+
+    private PodTerminator() {
+    }
+
+    private static ExecutorService createExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamingThreadFactory(new DaemonThreadFactory(), "PodTerminator"));
+        executor.allowCoreThreadTimeOut(true);
+        return new ImpersonatingExecutorService(executor, ACL.SYSTEM);
+    }
+
+    /**
+     * @return the number of agents whose pod is still to be deleted.
+     */
+    static int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Deletes the pod of the given agent in the background.
+     *
+     * @param agent the terminated agent
+     * @param client a client connected to the cloud of the agent
+     * @param deletePod whether the retention policy allows deleting the pod
+     * @param listener the termination listener, used until the returned future completes
+     * @return a future completed once the pod was deleted, or kept
+     */
+    @Nonnull
+    static CompletableFuture<Void> terminate(@Nonnull KubernetesSlave agent, @Nonnull KubernetesClient client, boolean deletePod,
+            @Nonnull TaskListener listener) {
+        if (gaugeRegistered.compareAndSet(false, true)) {
+            MetricRegistry registry = Metrics.metricRegistry();
+            registry.remove(MetricNames.PODS_TERMINATION_PENDING);
+            registry.register(MetricNames.PODS_TERMINATION_PENDING, (Gauge<Integer>) PodTerminator::getPending);
+        }
+        pending.incrementAndGet();
+        CompletableFuture<Void> deleted = CompletableFuture.runAsync(() -> {
+            if (deletePod) {
+                agent.deleteSlavePod(listener, client);
+                Metrics.metricRegistry().counter(MetricNames.PODS_TERMINATED).inc();
+            }
+            String msg = String.format("Disconnected computer %s", agent.getNodeName());
+            LOGGER.log(Level.INFO, msg);
+            listener.getLogger().println(msg);
+        }, EXECUTOR);
+        return deleted.whenComplete((v, t) -> {
+            pending.decrementAndGet();
+            if (t != null) {
+                LOGGER.log(Level.WARNING, "Failed to terminate agent " + agent.getNodeName(), t);
+            }
+        });
+    }
+}
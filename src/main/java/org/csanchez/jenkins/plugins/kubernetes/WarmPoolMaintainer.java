@@ -0,0 +1,135 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+
+import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Descriptor;
+import hudson.model.TaskListener;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import jenkins.metrics.api.Metrics;
+import jenkins.model.Jenkins;
+
+/**
+ * Keeps the warm pool of each {@link PodTemplate} filled, see {@link PodTemplate#getWarmPoolSize()}.
+ * <p>
+ * Agents started for the pool are idle and connected, so the queue hands them items for the template label right
+ * away instead of waiting for a pod to be scheduled and to connect. As pool agents get used, replacements are started
+ * in the background, within the capacity of the cloud and of the template.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class WarmPoolMaintainer extends AsyncPeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(WarmPoolMaintainer.class.getName());
+
+    /**
+     * How often pools are checked, in milliseconds.
+     */
+    private static final long RECURRENCE_PERIOD = Long.getLong(WarmPoolMaintainer.class.getName() + ".recurrencePeriod",
+            TimeUnit.SECONDS.toMillis(15));
+
+    /**
+     * Names of the idle pool agents within the pool size of their template.
+     */
+    private static volatile Set<String> retained = Collections.emptySet();
+
+    public WarmPoolMaintainer() {
+        super("Kubernetes warm pool maintainer");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return RECURRENCE_PERIOD;
+    }
+
+    @Override
+    protected Level getNormalLoggingLevel() {
+        return Level.FINEST;
+    }
+
+    /**
+     * @param nodeName the name of an agent
+     * @return true if the agent is part of a warm pool and should be kept while idle.
+     */
+    static boolean isRetained(@Nonnull String nodeName) {
+        return retained.contains(nodeName);
+    }
+
+    @Override
+    protected void execution(TaskListener listener) {
+        Jenkins jenkins = Jenkins.get();
+        Map<String, List<String>> idleAgents = new HashMap<>();
+        for (KubernetesSlave agent : KubernetesSlaveIndex.getNodes()) {
+            if (agent.getRetentionStrategy() instanceof WarmPoolRetentionStrategy) {
+                Computer computer = agent.toComputer();
+                // Agents still connecting are counted too, so that they are not started twice
+                if (computer != null && computer.isIdle() && computer.isAcceptingTasks()) {
+                    idleAgents.computeIfAbsent(poolKey(agent.getCloudName(), agent.getPodTemplateId()), k -> new ArrayList<>())
+                            .add(agent.getNodeName());
+                }
+            }
+        }
+        Set<String> newRetained = new HashSet<>();
+        for (KubernetesCloud cloud : jenkins.clouds.getAll(KubernetesCloud.class)) {
+            for (PodTemplate template : cloud.getTemplates()) {
+                int size = template.getWarmPoolSize();
+                if (size == 0) {
+                    continue;
+                }
+                List<String> idle = idleAgents.getOrDefault(poolKey(cloud.name, template.getId()), Collections.emptyList());
+                newRetained.addAll(idle.subList(0, Math.min(size, idle.size())));
+                if (idle.size() < size && !jenkins.isQuietingDown()) {
+                    LOGGER.log(Level.FINE, "Warm pool of template {0} in {1} has {2} idle agents out of {3}",
+                            new Object[] {template.getName(), cloud.name, idle.size(), size});
+                    refill(cloud, template, size - idle.size());
+                }
+            }
+        }
+        // Agents beyond the pool size, or of templates no longer pooled, fall back to their usual idle timeout
+        retained = newRetained;
+    }
+
+    private static void refill(KubernetesCloud cloud, PodTemplate template, int missing) {
+        List<KubernetesSlave> agents;
+        try {
+            agents = cloud.createWarmPoolAgents(template, missing);
+        } catch (IOException | KubernetesAuthException | Descriptor.FormException | KubernetesClientException e) {
+            LOGGER.log(Level.WARNING, "Failed to refill the warm pool of template " + template.getName() + " in " + cloud.name, e);
+            return;
+        }
+        for (KubernetesSlave agent : agents) {
+            agent.setRetentionStrategy(new WarmPoolRetentionStrategy(agent.getRetentionStrategy()));
+            try {
+                Jenkins.get().addNode(agent);
+                Metrics.metricRegistry().counter(MetricNames.WARM_POOL_STARTED).inc();
+                LOGGER.log(Level.FINE, "Started agent {0} for the warm pool of template {1}",
+                        new Object[] {agent.getNodeName(), template.getName()});
+            } catch (IOException e) {
+                CapacityLedger.get(cloud).release(agent.getNodeName());
+                LOGGER.log(Level.WARNING, "Failed to add warm pool agent " + agent.getNodeName(), e);
+            }
+        }
+    }
+
+    private static String poolKey(String cloudName, String templateId) {
+        return cloudName + '/' + templateId;
+    }
+}
@@ -0,0 +1,91 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import javax.annotation.Nonnull;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import hudson.Extension;
+import hudson.model.Descriptor;
+import hudson.model.Executor;
+import hudson.model.ExecutorListener;
+import hudson.model.Queue;
+import hudson.slaves.RetentionStrategy;
+import jenkins.metrics.api.Metrics;
+
+/**
+ * Retention strategy of the agents started for the warm pool of a {@link PodTemplate}.
+ * <p>
+ * While the agent is idle and counted in the pool by {@link WarmPoolMaintainer}, it is kept connected whatever the idle
+ * timeout. Otherwise, including once it accepted a task, it behaves like the retention strategy it would have had if it
+ * was provisioned on demand.
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class WarmPoolRetentionStrategy extends RetentionStrategy<KubernetesComputer> implements ExecutorListener {
+
+    @Nonnull
+    private final RetentionStrategy delegate;
+
+    public WarmPoolRetentionStrategy(@Nonnull RetentionStrategy delegate) {
+        this.delegate = delegate;
+    }
+
+    @Nonnull
+    public RetentionStrategy getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public long check(@Nonnull KubernetesComputer c) {
+        if (c.isIdle() && WarmPoolMaintainer.isRetained(c.getName())) {
+            return 1;
+        }
+        return delegate.check(c);
+    }
+
+    @Override
+    public boolean isManualLaunchAllowed(KubernetesComputer c) {
+        return delegate.isManualLaunchAllowed(c);
+    }
+
+    @Override
+    public boolean isAcceptingTasks(KubernetesComputer c) {
+        return delegate.isAcceptingTasks(c);
+    }
+
+    @Override
+    public void start(@Nonnull KubernetesComputer c) {
+        delegate.start(c);
+    }
+
+    @Override
+    public void taskAccepted(Executor executor, Queue.Task task) {
+        Metrics.metricRegistry().counter(MetricNames.WARM_POOL_HIT).inc();
+        if (delegate instanceof ExecutorListener) {
+            ((ExecutorListener) delegate).taskAccepted(executor, task);
+        }
+    }
+
+    @Override
+    public void taskCompleted(Executor executor, Queue.Task task, long durationMS) {
+        if (delegate instanceof ExecutorListener) {
+            ((ExecutorListener) delegate).taskCompleted(executor, task, durationMS);
+        }
+    }
+
+    @Override
+    public void taskCompletedWithProblems(Executor executor, Queue.Task task, long durationMS, Throwable problems) {
+        if (delegate instanceof ExecutorListener) {
+            ((ExecutorListener) delegate).taskCompletedWithProblems(executor, task, durationMS, problems);
+        }
+    }
+
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static final class DescriptorImpl extends Descriptor<RetentionStrategy<?>> {
+        @Override
+        public String getDisplayName() {
+            return "Kubernetes warm pool";
+        }
+    }
+}
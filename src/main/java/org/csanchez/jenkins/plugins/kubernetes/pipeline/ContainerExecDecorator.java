@@ -45,6 +45,7 @@ import java.util.regex.Matcher;
 
 import hudson.AbortException;
 import io.fabric8.kubernetes.api.model.Container;
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.io.output.TeeOutputStream;
 import org.csanchez.jenkins.plugins.kubernetes.ContainerTemplate;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlave;
@@ -95,9 +96,17 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
     private static final int STDIN_BUFFER_SIZE = Integer.getInteger(ContainerExecDecorator.class.getName() + ".stdinBufferSize", 16 * 1024);
     /**
      * time in milliseconds to wait for checking whether the process immediately returned
+     * @deprecated no longer used, the status of the exec stream tells whether the process exited immediately
      */
+    @Deprecated
     public static final int COMMAND_FINISHED_TIMEOUT_MS = 200;
 
+    /**
+     * Runs commands in a shell kept open per container instead of opening a websocket per command.
+     * See {@link ContainerExecSession}.
+     */
+    static final boolean PERSISTENT_SESSIONS = Boolean.getBoolean(ContainerExecDecorator.class.getName() + ".persistentSessions");
+
     @SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "not needed on deserialization")
     private transient List<Closeable> closables;
 
@@ -344,6 +353,7 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                 final CountDownLatch started = new CountDownLatch(1);
                 final CountDownLatch finished = new CountDownLatch(1);
                 final AtomicBoolean alive = new AtomicBoolean(false);
+                final AtomicBoolean launchFailureReported = new AtomicBoolean(false);
                 final AtomicLong startAlive = new AtomicLong();
                 long startMethod = System.nanoTime();
 
@@ -378,6 +388,14 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                     closables = new ArrayList<>();
                 }
 
+                if (PERSISTENT_SESSIONS && !sh.equals("cmd")) {
+                    OutputStream sessionOutput = quiet ? NullOutputStream.NULL_OUTPUT_STREAM : printStream;
+                    if (outputForCaller != null && !outputForCaller.equals(printStream)) {
+                        sessionOutput = new TeeOutputStream(outputForCaller, sessionOutput);
+                    }
+                    return doLaunchInSession(sh, sessionOutput, printStream, cmdEnvs, pwd, masks, startMethod, commands);
+                }
+
                 Execable<String, ExecWatch> execable = getClient().pods().inNamespace(getNamespace()).withName(getPodName()).inContainer(containerName) //
                         .redirectingInput(STDIN_BUFFER_SIZE) // JENKINS-50429
                         .writingOutput(stream).writingError(stream).writingErrorChannel(error)
@@ -394,6 +412,9 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                             public void onFailure(Throwable t, Response response) {
                                 alive.set(false);
                                 t.printStackTrace(launcher.getListener().getLogger());
+                                if (ContainerExecProc.reportLaunchFailure(error, launcher.getListener())) {
+                                    launchFailureReported.set(true);
+                                }
                                 started.countDown();
                                 LOGGER.log(Level.FINEST, "onFailure : {0}", finished);
                                 if (finished.getCount() == 0) {
@@ -406,6 +427,10 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                             @Override
                             public void onClose(int i, String s) {
                                 alive.set(false);
+                                // durable tasks do not join the process, the failure must be reported when it happens
+                                if (ContainerExecProc.reportLaunchFailure(error, launcher.getListener())) {
+                                    launchFailureReported.set(true);
+                                }
                                 started.countDown();
                                 LOGGER.log(Level.FINEST, "onClose : {0} [{1} ms]", new Object[]{finished, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startAlive.get())});
                                 if (finished.getCount() == 0) {
@@ -452,10 +477,12 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                 }
 
                 try {
-                    // Depends on the ping time with the Kubernetes API server
-                    // Not fully satisfied with this solution because it can delay the execution
-                    if (finished.await(COMMAND_FINISHED_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
-                        launcher.getListener().error("Process exited immediately after creation. See output below%n%s", stdout.toString(StandardCharsets.UTF_8.name()));
+                    // No need to wait for the shell to settle: a shell that terminates without running the commands
+                    // is reported from the status of the exec stream when it closes, see ContainerExecProc#reportLaunchFailure
+                    if (finished.getCount() == 0) {
+                        if (!launchFailureReported.get()) {
+                            launcher.getListener().error("Process exited immediately after creation. See output below%n%s", stdout.toString(StandardCharsets.UTF_8.name()));
+                        }
                         throw new AbortException("Process exited immediately after creation. Check logs above for more details.");
                     }
                     toggleStdout.disable();
@@ -467,29 +494,7 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                         in.println(String.format("cd \"%s\"", pwd));
                     }
 
-                    EnvVars envVars = new EnvVars();
-
-                    //get global vars here, run the export first as they'll get overwritten.
-                    if (globalVars != null) {
-                        envVars.overrideAll(globalVars);
-                    }
-
-                    if(rcEnvVars != null) {
-                        envVars.overrideAll(rcEnvVars);
-                    }
-
-                    if (environmentExpander != null) {
-                        environmentExpander.expand(envVars);
-                    }
-
-                    //setup specific command envs passed into cmd
-                    if (cmdEnvs != null) {
-                        for (String cmdEnv : cmdEnvs) {
-                            envVars.addLine(cmdEnv);
-                        }
-                    }
-
-                    LOGGER.log(Level.FINEST, "Launching with env vars: {0}", envVars.toString());
+                    EnvVars envVars = getEnvVars(cmdEnvs);
 
                     setupEnvironmentVariable(envVars, in, sh.equals("cmd"));
 
@@ -508,6 +513,32 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                 }
             }
 
+            private Proc doLaunchInSession(String sh, OutputStream output, PrintStream printStream, String[] cmdEnvs,
+                    FilePath pwd, boolean[] masks, long startMethod, String... commands) throws IOException {
+                // Run in a subshell so that the directory and environment do not leak into the next command
+                ByteArrayOutputStream script = new ByteArrayOutputStream();
+                PrintStream in = new PrintStream(script, true, StandardCharsets.UTF_8.name());
+                in.println("(");
+                if (pwd != null) {
+                    in.println(String.format("cd \"%s\"", pwd));
+                }
+                try {
+                    setupEnvironmentVariable(getEnvVars(cmdEnvs), in, false);
+                } catch (InterruptedException ie) {
+                    throw new InterruptedIOException(ie.getMessage());
+                }
+                doExec(in, printStream, masks, false, commands);
+                in.println(")");
+
+                ContainerExecSession session = ContainerExecSession.acquire(getClient(), getNamespace(), getPodName(),
+                        containerName, sh, WEBSOCKET_CONNECTION_TIMEOUT);
+                Proc proc = session.execute(script.toByteArray(), output);
+                LOGGER.log(Level.FINE, "Started process in exec session of pod: [" + getPodName() + "], container: ["
+                        + containerName + "]" + "[" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startMethod) + " ms]");
+                closables.add((Closeable) proc);
+                return proc;
+            }
+
             @Override
             public void kill(Map<String, String> modelEnvVars) throws IOException, InterruptedException {
                 getListener().getLogger().println("Killing processes");
@@ -523,6 +554,33 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                 getListener().getLogger().println("kill finished with exit code " + exitCode);
             }
 
+            private EnvVars getEnvVars(String[] cmdEnvs) throws IOException, InterruptedException {
+                EnvVars envVars = new EnvVars();
+
+                //get global vars here, run the export first as they'll get overwritten.
+                if (globalVars != null) {
+                    envVars.overrideAll(globalVars);
+                }
+
+                if(rcEnvVars != null) {
+                    envVars.overrideAll(rcEnvVars);
+                }
+
+                if (environmentExpander != null) {
+                    environmentExpander.expand(envVars);
+                }
+
+                //setup specific command envs passed into cmd
+                if (cmdEnvs != null) {
+                    for (String cmdEnv : cmdEnvs) {
+                        envVars.addLine(cmdEnv);
+                    }
+                }
+
+                LOGGER.log(Level.FINEST, "Launching with env vars: {0}", envVars.toString());
+                return envVars;
+            }
+
             private void setupEnvironmentVariable(EnvVars vars, PrintStream out, boolean windows) throws IOException {
                 for (Map.Entry<String, String> entry : vars.entrySet()) {
                     //Check that key is bash compliant.
@@ -553,7 +611,7 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
         }
     }
 
-    private static class ToggleOutputStream extends FilterOutputStream {
+    static class ToggleOutputStream extends FilterOutputStream {
         private boolean disabled;
         public ToggleOutputStream(OutputStream out) {
             super(out);
@@ -573,14 +631,21 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
                 out.write(b);
             }
         }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!disabled) {
+                out.write(b, off, len);
+            }
+        }
     }
 
     /**
      * Process given stream and mask as specified by the bitfield.
      * Uses space as a separator to determine which fragments to hide.
      */
-    private static class MaskOutputStream extends FilterOutputStream {
-        private static final String MASK_STRING = "********";
+    static class MaskOutputStream extends FilterOutputStream {
+        private static final byte[] MASK_BYTES = "********".getBytes(StandardCharsets.US_ASCII);
 
         private final boolean[] masks;
         private final static char SEPARATOR = ' ';
@@ -604,21 +669,56 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
             } else if (masks[index]) {
                 if (!wrote) {
                     wrote = true;
-                    for (char c : MASK_STRING.toCharArray()) {
-                        out.write(c);
-                    }
+                    out.write(MASK_BYTES);
                 }
             } else {
                 out.write(b);
             }
         }
 
+        /**
+         * Same as {@link #write(int)} for each byte, but writes whole fragments at once.
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int end = off + len;
+            int i = off;
+            while (i < end) {
+                if (masks == null || index >= masks.length) {
+                    out.write(b, i, end - i);
+                    return;
+                }
+                int separator = i;
+                while (separator < end && !isSeparator(b[separator])) {
+                    separator++;
+                }
+                if (separator > i) {
+                    if (!masks[index]) {
+                        out.write(b, i, separator - i);
+                    } else if (!wrote) {
+                        wrote = true;
+                        out.write(MASK_BYTES);
+                    }
+                }
+                if (separator < end) {
+                    out.write(SEPARATOR);
+                    index++;
+                    wrote = false;
+                }
+                i = separator + 1;
+            }
+        }
+
         private boolean isSeparator(int b) {
             return b == SEPARATOR;
         }
     }
 
     private static void doExec(PrintStream in, PrintStream out, boolean[] masks, String... statements) {
+        doExec(in, out, masks, true, statements);
+    }
+
+    private static void doExec(PrintStream in, PrintStream out, boolean[] masks, boolean exit, String... statements) {
         long start = System.nanoTime();
         // For logging
         ByteArrayOutputStream loggingOutput = new ByteArrayOutputStream();
@@ -641,8 +741,10 @@ public class ContainerExecDecorator extends LauncherDecorator implements Seriali
             }
             tee.println();
             LOGGER.log(Level.FINEST, loggingOutput.toString(encoding) + "[" + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) + " μs." + "]");
-            // We need to exit so that we know when the command has finished.
-            tee.println(EXIT);
+            if (exit) {
+                // We need to exit so that we know when the command has finished.
+                tee.println(EXIT);
+            }
             tee.flush();
         } catch (UnsupportedEncodingException e) {
             e.printStackTrace();
@@ -17,7 +17,11 @@ import java.util.logging.Logger;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import javax.annotation.CheckForNull;
+
+import hudson.AbortException;
 import hudson.Proc;
+import hudson.model.TaskListener;
 import io.fabric8.kubernetes.client.dsl.ExecWatch;
 import jenkins.util.Timer;
 import static org.csanchez.jenkins.plugins.kubernetes.pipeline.Constants.CTRL_C;
@@ -80,8 +84,62 @@ public class ContainerExecProc extends Proc implements Closeable, Runnable {
         }
     }
 
+    /**
+     * @throws AbortException if the shell terminated without running the commands, which was reported to the build
+     *                        log by {@link #reportLaunchFailure} when the exec stream closed.
+     */
     @Override
     public int join() throws IOException, InterruptedException {
+        int exitCode = waitForExitCode();
+        if (exitCode == -1 && getLaunchFailure(error) != null) {
+            throw new AbortException("Process exited immediately after creation. Check logs above for more details.");
+        }
+        return exitCode;
+    }
+
+    /**
+     * Reports a shell that terminated without running the commands, e.g. a shell missing from the image, as soon as
+     * the exec stream is closed, since durable tasks never {@link #join()} the process.
+     *
+     * @param error the error channel of the closed exec stream
+     * @return true if a failure was reported
+     */
+    static boolean reportLaunchFailure(ByteArrayOutputStream error, TaskListener listener) {
+        String launchFailure = getLaunchFailure(error);
+        if (launchFailure == null) {
+            return false;
+        }
+        listener.error("Process exited immediately after creation: %s", launchFailure);
+        return true;
+    }
+
+    /**
+     * @param error the error channel of the closed exec stream
+     * @return the message of its status if it is a failure other than a non-zero exit code, e.g.
+     * <pre>{"metadata":{},"status":"Failure",
+     *   "message":"OCI runtime exec failed: exec failed: ... executable file not found in $PATH: unknown",
+     *   "reason":"InternalError",
+     *   "details":{"causes":[{"message":"OCI runtime exec failed: ..."}]}}</pre>
+     */
+    @CheckForNull
+    static String getLaunchFailure(ByteArrayOutputStream error) {
+        if (error.size() == 0) {
+            return null;
+        }
+        try {
+            String status = error.toString(StandardCharsets.UTF_8.name());
+            JsonNode errorJson = new ObjectMapper().readTree(status);
+            if (!"Failure".equalsIgnoreCase(errorJson.path("status").asText(""))
+                    || "NonZeroExitCode".equalsIgnoreCase(errorJson.path("reason").asText(""))) {
+                return null;
+            }
+            return errorJson.path("message").asText(status);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private int waitForExitCode() throws IOException {
         try {
             LOGGER.log(Level.FINEST, "Waiting for websocket to close on command finish ({0})", finished);
             finished.await();
@@ -95,16 +153,18 @@ public class ContainerExecProc extends Proc implements Closeable, Runnable {
                 //   "message":"command terminated with non-zero exit code: Error executing in Docker Container: 127",
                 //   "reason":"NonZeroExitCode",
                 //   "details":{"causes":[{"reason":"ExitCode","message":"127"}]}}
+                // or, if the shell could not be started, see getLaunchFailure
                 try {
                     ObjectMapper mapper = new ObjectMapper();
                     JsonNode errorJson = mapper.readTree(error.toByteArray());
                     if ("Success".equalsIgnoreCase(errorJson.get("status").asText())) {
                         return 0;
                     }
-                    JsonNode causes = errorJson.get("details").get("causes");
-                    if (causes.isArray()) {
+                    JsonNode details = errorJson.get("details");
+                    JsonNode causes = details == null ? null : details.get("causes");
+                    if (causes != null && causes.isArray()) {
                         for (JsonNode cause : causes) {
-                            if ("ExitCode".equalsIgnoreCase(cause.get("reason").asText(""))) {
+                            if ("ExitCode".equalsIgnoreCase(cause.path("reason").asText(""))) {
                                 return cause.get("message").asInt();
                             }
                         }
@@ -0,0 +1,466 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Deque;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import hudson.Extension;
+import hudson.Proc;
+import hudson.model.Node;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.dsl.ExecListener;
+import io.fabric8.kubernetes.client.dsl.ExecWatch;
+import jenkins.model.NodeListener;
+import jenkins.util.Timer;
+import okhttp3.Response;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlave;
+
+import static org.csanchez.jenkins.plugins.kubernetes.pipeline.Constants.NEWLINE;
+
+/**
+ * A shell kept running in a container to run successive commands, so that the exec websocket is opened once instead
+ * of once per command. Enabled by {@link ContainerExecDecorator#PERSISTENT_SESSIONS}.
+ * <p>
+ * Each command is run in a subshell, so that its working directory and environment do not leak into the next one,
+ * followed by a line made of a marker unique to the session and of the exit code of the subshell. The output of the
+ * session is forwarded to the output of the current command until that marker is seen.
+ * <p>
+ * A session runs one command at a time. Idle sessions are pooled per pod and container, concurrent commands open
+ * more sessions, and sessions idle for {@link #IDLE_TIMEOUT} are closed.
+ */
+class ContainerExecSession implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(ContainerExecSession.class.getName());
+
+    /**
+     * Time in milliseconds after which an idle session is closed.
+     */
+    private static final long IDLE_TIMEOUT = Long.getLong(ContainerExecSession.class.getName() + ".idleTimeout",
+            TimeUnit.MINUTES.toMillis(5));
+
+    // Send a newline every minute to keep the websocket alive
+    private static final long KEEPALIVE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private static final char MARKER_START = '\u0002';
+
+    /**
+     * Idle sessions by namespace, pod, container and shell. Keys are removed once they have no idle session left.
+     */
+    @VisibleForTesting
+    static final Map<String, Deque<ContainerExecSession>> idleSessions = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final String id = UUID.randomUUID().toString();
+    private final Demultiplexer output;
+    private final AtomicBoolean watchClosed = new AtomicBoolean();
+    private volatile ExecWatch watch;
+    private volatile OutputStream stdin;
+    private volatile ScheduledFuture<?> keepAlive;
+    private volatile boolean closed;
+    private volatile long idleSince = System.currentTimeMillis();
+
+    private ContainerExecSession(String key) {
+        this.key = key;
+        this.output = new Demultiplexer((MARKER_START + id + ":").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Takes an idle session of the given container, or opens a new one.
+     */
+    @Nonnull
+    static ContainerExecSession acquire(@Nonnull KubernetesClient client, @Nonnull String namespace, @Nonnull String podName,
+            @Nonnull String containerName, @Nonnull String shell, int connectionTimeout) throws IOException {
+        String key = namespace + "/" + podName + "/" + containerName + "/" + shell;
+        Deque<ContainerExecSession> sessions = idleSessions.get(key);
+        if (sessions != null) {
+            ContainerExecSession session;
+            while ((session = sessions.poll()) != null) {
+                if (!session.closed) {
+                    LOGGER.log(Level.FINEST, "Reusing exec session {0} in {1}", new Object[] {session.id, key});
+                    removeIfEmpty(key);
+                    return session;
+                }
+            }
+            removeIfEmpty(key);
+        }
+        ContainerExecSession session = new ContainerExecSession(key);
+        session.open(client, namespace, podName, containerName, shell, connectionTimeout);
+        return session;
+    }
+
+    private void open(KubernetesClient client, String namespace, String podName, String containerName, String shell,
+            int connectionTimeout) throws IOException {
+        long start = System.nanoTime();
+        CountDownLatch started = new CountDownLatch(1);
+        try {
+            watch = client.pods().inNamespace(namespace).withName(podName).inContainer(containerName)
+                    .redirectingInput()
+                    .writingOutput(output).writingError(output)
+                    .usingListener(new ExecListener() {
+                        @Override
+                        public void onOpen(Response response) {
+                            started.countDown();
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t, Response response) {
+                            LOGGER.log(Level.FINE, "Exec session in " + key + " failed", t);
+                            started.countDown();
+                            discard();
+                        }
+
+                        @Override
+                        public void onClose(int code, String reason) {
+                            LOGGER.log(Level.FINEST, "Exec session in {0} closed: {1}", new Object[] {key, reason});
+                            started.countDown();
+                            discard();
+                        }
+                    })
+                    .exec(shell);
+        } catch (KubernetesClientException | RejectedExecutionException e) {
+            throw new IOException("Failed to open exec session in " + key, e);
+        }
+        stdin = watch.getInput();
+        try {
+            if (!started.await(connectionTimeout, TimeUnit.SECONDS)) {
+                discard();
+                throw new IOException("Timed out waiting for websocket connection of exec session in " + key);
+            }
+        } catch (InterruptedException e) {
+            discard();
+            throw new IOException("Interrupted while waiting for websocket connection of exec session in " + key, e);
+        }
+        keepAlive = Timer.get().scheduleWithFixedDelay(this::keepAlive, KEEPALIVE_INTERVAL, KEEPALIVE_INTERVAL,
+                TimeUnit.MILLISECONDS);
+        if (closed) {
+            discard();
+            throw new IOException("Exec session in " + key + " closed as soon as opened");
+        }
+        LOGGER.log(Level.FINE, "Opened exec session in {0} [{1} ms]",
+                new Object[] {key, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)});
+    }
+
+    /**
+     * Runs the given script in a subshell of this session.
+     *
+     * @param script the script, one statement per line
+     * @param out where the output of the script is written
+     * @return the running script
+     */
+    @Nonnull
+    Proc execute(@Nonnull byte[] script, @Nonnull OutputStream out) throws IOException {
+        CompletableFuture<Integer> exitCode = output.start(out);
+        // back to the pool as soon as the marker is seen, whether the caller joins or not
+        exitCode.thenRun(this::release);
+        try {
+            synchronized (this) {
+                stdin.write(script);
+                // Print the marker followed by the exit code of the subshell
+                stdin.write(String.format("printf '\\002%%s:%%d\\n' '%s' \"$?\"%n", id).getBytes(StandardCharsets.UTF_8));
+                stdin.flush();
+            }
+        } catch (IOException e) {
+            discard();
+            throw e;
+        }
+        return new SessionProc(exitCode);
+    }
+
+    private void release() {
+        if (closed) {
+            return;
+        }
+        idleSince = System.currentTimeMillis();
+        // pushed while computing, so that the deque cannot be removed in between
+        idleSessions.compute(key, (k, sessions) -> {
+            Deque<ContainerExecSession> d = sessions != null ? sessions : new ConcurrentLinkedDeque<>();
+            d.push(this);
+            return d;
+        });
+    }
+
+    private static void removeIfEmpty(String key) {
+        idleSessions.computeIfPresent(key, (k, sessions) -> sessions.isEmpty() ? null : sessions);
+    }
+
+    /**
+     * Closes the idle sessions of the given pod.
+     */
+    static void discardAll(@Nonnull String namespace, @Nonnull String podName) {
+        String prefix = namespace + "/" + podName + "/";
+        for (String key : idleSessions.keySet()) {
+            if (key.startsWith(prefix)) {
+                Deque<ContainerExecSession> sessions = idleSessions.remove(key);
+                if (sessions != null) {
+                    for (ContainerExecSession session : sessions) {
+                        session.discard();
+                    }
+                }
+            }
+        }
+    }
+
+    private void keepAlive() {
+        Deque<ContainerExecSession> sessions = idleSessions.get(key);
+        if (sessions != null && System.currentTimeMillis() - idleSince > IDLE_TIMEOUT && sessions.remove(this)) {
+            removeIfEmpty(key);
+            LOGGER.log(Level.FINE, "Closing exec session in {0}, idle for {1} ms",
+                    new Object[] {key, System.currentTimeMillis() - idleSince});
+            discard();
+            return;
+        }
+        try {
+            synchronized (this) {
+                stdin.write(NEWLINE.getBytes(StandardCharsets.UTF_8));
+                stdin.flush();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Exec session keepalive failed", e);
+            discard();
+        }
+    }
+
+    /**
+     * Closes the session, failing the running command if any.
+     */
+    void discard() {
+        closed = true;
+        ScheduledFuture<?> k = keepAlive;
+        if (k != null) {
+            k.cancel(false);
+        }
+        Deque<ContainerExecSession> sessions = idleSessions.get(key);
+        if (sessions != null && sessions.remove(this)) {
+            removeIfEmpty(key);
+        }
+        output.fail();
+        ExecWatch w = watch;
+        if (w != null && watchClosed.compareAndSet(false, true)) {
+            try {
+                w.close();
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "failed to close exec session", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        discard();
+    }
+
+    /**
+     * A command run in the session.
+     */
+    private class SessionProc extends Proc implements Closeable {
+        private final CompletableFuture<Integer> exitCode;
+
+        SessionProc(CompletableFuture<Integer> exitCode) {
+            this.exitCode = exitCode;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return !exitCode.isDone();
+        }
+
+        @Override
+        public void kill() {
+            // The command is not attached to a terminal, closing the session is the only way to stop it
+            discard();
+        }
+
+        @Override
+        public int join() throws InterruptedException {
+            try {
+                return exitCode.get();
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.WARNING, "Exec session closed while running a command", e.getCause());
+                return -1;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (isAlive()) {
+                discard();
+            }
+        }
+
+        @Override
+        public InputStream getStdout() {
+            return null;
+        }
+
+        @Override
+        public InputStream getStderr() {
+            return null;
+        }
+
+        @Override
+        public OutputStream getStdin() {
+            return null;
+        }
+    }
+
+    /**
+     * Closes the idle sessions of removed agents.
+     */
+    @Extension
+    public static class NodeListenerImpl extends NodeListener {
+        @Override
+        protected void onDeleted(@Nonnull Node node) {
+            if (node instanceof KubernetesSlave && ((KubernetesSlave) node).getNamespace() != null) {
+                KubernetesSlave slave = (KubernetesSlave) node;
+                discardAll(slave.getNamespace(), slave.getPodName());
+            }
+        }
+    }
+
+    /**
+     * Forwards the output of the session to the current command until the marker and exit code are seen.
+     */
+    static class Demultiplexer extends OutputStream {
+        private final byte[] marker;
+        private int matched;
+        private boolean readingExitCode;
+        private final StringBuilder exitCode = new StringBuilder();
+        @CheckForNull
+        private OutputStream out;
+        @CheckForNull
+        private CompletableFuture<Integer> current;
+        private volatile boolean failed;
+
+        Demultiplexer(byte[] marker) {
+            this.marker = marker;
+        }
+
+        synchronized CompletableFuture<Integer> start(OutputStream out) throws IOException {
+            if (failed) {
+                throw new IOException("Exec session is closed");
+            }
+            if (current != null && !current.isDone()) {
+                throw new IllegalStateException("A command is already running in this session");
+            }
+            this.out = out;
+            this.current = new CompletableFuture<>();
+            return current;
+        }
+
+        synchronized void fail() {
+            failed = true;
+            if (current != null) {
+                current.completeExceptionally(new IOException("Exec session closed"));
+            }
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            if (readingExitCode) {
+                if (b == '\n') {
+                    readingExitCode = false;
+                    complete();
+                } else {
+                    exitCode.append((char) b);
+                }
+            } else if (b == marker[matched]) {
+                matched++;
+                if (matched == marker.length) {
+                    matched = 0;
+                    readingExitCode = true;
+                    exitCode.setLength(0);
+                }
+            } else {
+                // the first byte of the marker appears nowhere else in the marker
+                if (matched > 0) {
+                    forward(marker, 0, matched);
+                    matched = 0;
+                }
+                if (b == marker[0]) {
+                    matched = 1;
+                } else {
+                    forward(b);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            int start = off;
+            int end = off + len;
+            for (int i = off; i < end; i++) {
+                if (readingExitCode || matched > 0 || b[i] == marker[0]) {
+                    // plain output so far goes through at once
+                    if (i > start) {
+                        forward(b, start, i - start);
+                    }
+                    write(b[i]);
+                    start = i + 1;
+                }
+            }
+            if (end > start) {
+                forward(b, start, end - start);
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (out != null) {
+                out.flush();
+            }
+        }
+
+        private void forward(int b) throws IOException {
+            if (out != null) {
+                out.write(b);
+            }
+        }
+
+        private void forward(byte[] b, int off, int len) throws IOException {
+            if (out != null) {
+                out.write(b, off, len);
+            }
+        }
+
+        private void complete() throws IOException {
+            CompletableFuture<Integer> command = current;
+            if (out != null) {
+                out.flush();
+            }
+            out = null;
+            current = null;
+            if (command != null) {
+                int code;
+                try {
+                    code = Integer.parseInt(exitCode.toString().trim());
+                } catch (NumberFormatException e) {
+                    LOGGER.log(Level.WARNING, "Unable to parse exit code: {0}", exitCode);
+                    code = -1;
+                }
+                command.complete(code);
+            }
+        }
+    }
+}
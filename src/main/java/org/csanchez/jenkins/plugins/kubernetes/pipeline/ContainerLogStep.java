@@ -19,6 +19,7 @@ package org.csanchez.jenkins.plugins.kubernetes.pipeline;
 import com.google.common.collect.ImmutableSet;
 import hudson.Extension;
 import hudson.FilePath;
+import hudson.Util;
 import hudson.model.Node;
 import hudson.model.TaskListener;
 import org.jenkinsci.plugins.workflow.steps.Step;
@@ -39,6 +40,9 @@ public class ContainerLogStep extends Step implements Serializable {
     private int tailingLines = 0;
     private int sinceSeconds = 0;
     private int limitBytes = 0;
+    private boolean follow = false;
+    private String filter;
+    private String file;
 
     @DataBoundConstructor
     public ContainerLogStep(String name) {
@@ -90,6 +94,33 @@ public class ContainerLogStep extends Step implements Serializable {
         this.limitBytes = limitBytes;
     }
 
+    public boolean isFollow() {
+        return follow;
+    }
+
+    @DataBoundSetter
+    public void setFollow(boolean follow) {
+        this.follow = follow;
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    @DataBoundSetter
+    public void setFilter(String filter) {
+        this.filter = Util.fixEmpty(filter);
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    @DataBoundSetter
+    public void setFile(String file) {
+        this.file = Util.fixEmptyAndTrim(file);
+    }
+
     @Extension
     public static class DescriptorImpl extends StepDescriptor {
 
@@ -16,6 +16,11 @@
 
 package org.csanchez.jenkins.plugins.kubernetes.pipeline;
 
+import hudson.AbortException;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.StreamBuildListener;
 import hudson.model.TaskListener;
 import hudson.util.LogTaskListener;
 import io.fabric8.kubernetes.api.model.DoneablePod;
@@ -29,16 +34,34 @@ import io.fabric8.kubernetes.client.dsl.TimeTailPrettyLoggable;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
 
+import javax.annotation.CheckForNull;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 public class ContainerLogStepExecution extends SynchronousNonBlockingStepExecution<String> {
     private static final long serialVersionUID = 5588861066775717487L;
     private static final transient Logger LOGGER = Logger.getLogger(ContainerLogStepExecution.class.getName());
 
+    /**
+     * Size of the buffer the log is streamed through, in characters.
+     */
+    private static final int BUFFER_SIZE = Integer.getInteger(ContainerLogStepExecution.class.getName() + ".bufferSize", 8192);
+
     private final ContainerLogStep step;
     private transient KubernetesClient client;
+    private transient volatile Closeable stream;
 
     ContainerLogStepExecution(ContainerLogStep step, StepContext context) {
         super(context);
@@ -67,6 +90,17 @@ public class ContainerLogStepExecution extends SynchronousNonBlockingStepExecuti
         int tailingLines = step.getTailingLines();
         int sinceSeconds = step.getSinceSeconds();
         int limitBytes = step.getLimitBytes();
+        if (returnLog && (step.isFollow() || step.getFile() != null)) {
+            throw new AbortException("returnLog cannot be combined with follow or file");
+        }
+        String file = step.getFile();
+        FilePath workspace = null;
+        if (file != null) {
+            workspace = getContext().get(FilePath.class);
+            if (workspace == null) {
+                throw new AbortException("containerLog with file requires a workspace, use it within a node block");
+            }
+        }
 
         try {
             LOGGER.log(Level.FINE, "Starting containerLog step.");
@@ -86,17 +120,45 @@ public class ContainerLogStepExecution extends SynchronousNonBlockingStepExecuti
             TailPrettyLoggable<String, LogWatch> since = sinceSeconds > 0 ? limited.sinceSeconds(sinceSeconds) : limited;
 
             PrettyLoggable<String, LogWatch> tailed = tailingLines > 0 ? since.tailingLines(tailingLines) : since;
-            String log = tailed.getLog();
 
             if (returnLog) {
-                return log;
+                return tailed.getLog();
+            }
+
+            // Stream the log through a fixed size buffer rather than holding all of it in memory
+            Reader reader;
+            LogWatch watch = null;
+            if (step.isFollow()) {
+                // Reading from the pipe blocks the writing side, down to the connection to the API server
+                watch = tailed.watchLog();
+                stream = watch;
+                reader = new InputStreamReader(watch.getOutput(), StandardCharsets.UTF_8);
             } else {
-                logger().println("> start log of container '" + containerName + "' in pod '" + podName + "'");
-                logger().print(log);
-                if (log.length() > 0 && log.charAt(log.length() - 1) != '\n') {
-                    logger().println();
+                reader = tailed.getLogReader();
+                stream = reader;
+            }
+            Pattern filter = step.getFilter() == null ? null : Pattern.compile(step.getFilter());
+            try (Reader in = reader) {
+                if (file != null) {
+                    try (Writer out = new OutputStreamWriter(new GZIPOutputStream(workspace.child(file).write()), StandardCharsets.UTF_8)) {
+                        copy(in, out, filter);
+                    }
+                    archive(workspace, file);
+                    logger().println("> log of container '" + containerName + "' in pod '" + podName + "' archived as " + file);
+                } else {
+                    PrintStream logger = logger();
+                    logger.println("> start log of container '" + containerName + "' in pod '" + podName + "'");
+                    Writer out = new OutputStreamWriter(logger, StandardCharsets.UTF_8);
+                    if (!copy(in, out, filter)) {
+                        logger.println();
+                    }
+                    logger.println("> end log of container '" + containerName + "' in pod '" + podName + "'");
+                }
+            } finally {
+                stream = null;
+                if (watch != null) {
+                    watch.close();
                 }
-                logger().println("> end log of container '" + containerName + "' in pod '" + podName + "'");
             }
 
             return "";
@@ -112,9 +174,61 @@ public class ContainerLogStepExecution extends SynchronousNonBlockingStepExecuti
         }
     }
 
+    /**
+     * Copies the log, flushing whatever was read so that a followed log shows up as it is written.
+     *
+     * @param filter if set, only the lines matching this pattern are copied
+     * @return true if nothing was copied or the last character copied ends a line
+     */
+    static boolean copy(Reader in, Writer out, @CheckForNull Pattern filter) throws IOException {
+        if (filter != null) {
+            BufferedReader lines = new BufferedReader(in, BUFFER_SIZE);
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (filter.matcher(line).find()) {
+                    out.write(line);
+                    out.write('\n');
+                    out.flush();
+                }
+            }
+            return true;
+        }
+        char[] buffer = new char[BUFFER_SIZE];
+        char last = '\n';
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            if (n > 0) {
+                out.write(buffer, 0, n);
+                out.flush();
+                last = buffer[n - 1];
+            }
+        }
+        return last == '\n';
+    }
+
+    private void archive(FilePath workspace, String file) throws IOException, InterruptedException {
+        StepContext context = getContext();
+        Run<?, ?> run = context.get(Run.class);
+        Launcher launcher = context.get(Launcher.class);
+        if (run == null || launcher == null) {
+            throw new AbortException("Unable to archive " + file);
+        }
+        run.pickArtifactManager().archive(workspace, launcher, new StreamBuildListener(logger(), StandardCharsets.UTF_8),
+                Collections.singletonMap(file, file));
+    }
+
     @Override
     public void stop(Throwable cause) throws Exception {
         LOGGER.log(Level.FINE, "Stopping container log step.");
+        // unblocks a followed log, reads from the API server do not react to interrupts
+        Closeable s = stream;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.FINE, "failed to close container log stream", e);
+            }
+        }
         super.stop(cause);
     }
 }
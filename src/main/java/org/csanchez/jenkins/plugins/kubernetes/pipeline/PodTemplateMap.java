@@ -10,6 +10,7 @@ import javax.annotation.Nonnull;
 
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesCloud;
 import org.csanchez.jenkins.plugins.kubernetes.PodTemplate;
+import org.csanchez.jenkins.plugins.kubernetes.PodTemplateResolutionCache;
 import org.csanchez.jenkins.plugins.kubernetes.PodTemplateSource;
 
 import hudson.Extension;
@@ -58,12 +59,14 @@ public class PodTemplateMap {
             list.add(podTemplate);
             map.put(cloud.name, list);
         }
+        PodTemplateResolutionCache.invalidate();
     }
 
     public void removeTemplate(@Nonnull KubernetesCloud cloud, @Nonnull PodTemplate podTemplate) {
         synchronized (this.map) {
             getOrCreateTemplateList(cloud).remove(podTemplate);
         }
+        PodTemplateResolutionCache.invalidate();
     }
 
     @Extension
@@ -0,0 +1,193 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Aho-Corasick automaton over the UTF-8 bytes of a set of secrets, finding all of them in a single pass over a line.
+ * <p>
+ * The automaton is immutable and can be shared, the per-stream state lives in {@link Matcher}.
+ */
+final class SecretPatterns {
+
+    static final byte[] MASK = "********".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Transitions of the root, indexed by unsigned byte value.
+     */
+    private final int[] rootNext = new int[256];
+    /**
+     * Sorted bytes of the children of each state.
+     */
+    private final byte[][] childBytes;
+    /**
+     * Children of each state, in the order of {@link #childBytes}.
+     */
+    private final int[][] children;
+    private final int[] fail;
+    /**
+     * Length of the longest secret that is a suffix of the input read when reaching each state, 0 if none.
+     */
+    private final int[] longest;
+
+    private SecretPatterns(byte[][] childBytes, int[][] children, int[] fail, int[] longest) {
+        this.childBytes = childBytes;
+        this.children = children;
+        this.fail = fail;
+        this.longest = longest;
+        for (int b = 0; b < 256; b++) {
+            int child = child(0, (byte) b);
+            rootNext[b] = child < 0 ? 0 : child;
+        }
+    }
+
+    /**
+     * @param secrets the secrets to look for, empty values are ignored
+     */
+    @Nonnull
+    static SecretPatterns compile(@Nonnull Collection<String> secrets) {
+        List<TreeMap<Byte, Integer>> trie = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        lengths.add(0);
+        for (String secret : secrets) {
+            if (secret == null || secret.isEmpty()) {
+                continue;
+            }
+            byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+            int state = 0;
+            for (byte b : bytes) {
+                Integer next = trie.get(state).get(b);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    lengths.add(0);
+                    trie.get(state).put(b, next);
+                }
+                state = next;
+            }
+            lengths.set(state, bytes.length);
+        }
+
+        int size = trie.size();
+        byte[][] childBytes = new byte[size][];
+        int[][] children = new int[size][];
+        int[] longest = new int[size];
+        for (int state = 0; state < size; state++) {
+            TreeMap<Byte, Integer> c = trie.get(state);
+            childBytes[state] = new byte[c.size()];
+            children[state] = new int[c.size()];
+            int i = 0;
+            for (Map.Entry<Byte, Integer> e : c.entrySet()) {
+                childBytes[state][i] = e.getKey();
+                children[state][i] = e.getValue();
+                i++;
+            }
+            longest[state] = lengths.get(state);
+        }
+
+        // Breadth first, so that the failure link of a state is computed before its children
+        int[] fail = new int[size];
+        SecretPatterns patterns = new SecretPatterns(childBytes, children, fail, longest);
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : children[0]) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < children[state].length; i++) {
+                int child = children[state][i];
+                fail[child] = state == 0 ? 0 : patterns.next(fail[state], childBytes[state][i]);
+                longest[child] = Math.max(longest[child], longest[fail[child]]);
+                queue.add(child);
+            }
+        }
+        return patterns;
+    }
+
+    private int child(int state, byte b) {
+        int i = Arrays.binarySearch(childBytes[state], b);
+        return i >= 0 ? children[state][i] : -1;
+    }
+
+    private int next(int state, byte b) {
+        while (state != 0) {
+            int child = child(state, b);
+            if (child >= 0) {
+                return child;
+            }
+            state = fail[state];
+        }
+        return rootNext[b & 0xff];
+    }
+
+    /**
+     * @return a new matcher, to be used by a single stream.
+     */
+    @Nonnull
+    Matcher matcher() {
+        return new Matcher();
+    }
+
+    /**
+     * Masks the secrets found in a line. Overlapping occurrences are replaced by a single mask, adjacent ones by one
+     * mask each. Buffers are reused from one line to the next.
+     */
+    final class Matcher {
+        private int[] starts = new int[8];
+        private int[] ends = new int[8];
+        private int count;
+
+        /**
+         * Writes the given bytes to {@code out}, replacing secrets with {@link #MASK}.
+         */
+        void mask(byte[] b, int len, OutputStream out) throws IOException {
+            count = 0;
+            int state = 0;
+            for (int i = 0; i < len; i++) {
+                state = next(state, b[i]);
+                int length = longest[state];
+                if (length > 0) {
+                    add(i + 1 - length, i + 1);
+                }
+            }
+            int pos = 0;
+            for (int k = 0; k < count; k++) {
+                if (starts[k] > pos) {
+                    out.write(b, pos, starts[k] - pos);
+                }
+                out.write(MASK);
+                pos = ends[k];
+            }
+            if (pos < len) {
+                out.write(b, pos, len - pos);
+            }
+        }
+
+        private void add(int start, int end) {
+            // ends are increasing, merge with the previous occurrences this one overlaps
+            while (count > 0 && ends[count - 1] > start) {
+                start = Math.min(start, starts[count - 1]);
+                count--;
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+        }
+    }
+}
@@ -18,8 +18,15 @@ package org.csanchez.jenkins.plugins.kubernetes.pipeline;
 
 import hudson.Extension;
 import hudson.console.LineTransformationOutputStream;
-import hudson.remoting.Channel;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.slaves.ComputerListener;
+import hudson.slaves.OfflineCause;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.LogTaskListener;
+import hudson.util.NamingThreadFactory;
 import io.fabric8.kubernetes.api.model.Container;
 import io.fabric8.kubernetes.api.model.EnvVar;
 import io.fabric8.kubernetes.api.model.EnvVarSource;
@@ -32,19 +39,33 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jenkins.model.NodeListener;
+import jenkins.security.ImpersonatingExecutorService;
 import okhttp3.Response;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesComputer;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlave;
+import org.csanchez.jenkins.plugins.kubernetes.PodCache;
 import org.jenkinsci.plugins.kubernetes.auth.KubernetesAuthException;
 import org.jenkinsci.plugins.workflow.log.TaskListenerDecorator;
 import org.jenkinsci.plugins.workflow.steps.DynamicContext;
@@ -60,23 +81,34 @@ public final class SecretsMasker extends TaskListenerDecorator {
 
     private final Set<String> values;
 
+    /**
+     * Built once per masker, on the controller and again wherever it is deserialized, and shared by all decorated streams.
+     */
+    private transient volatile SecretPatterns patterns;
+
     private SecretsMasker(Set<String> values) {
         assert !values.isEmpty();
         this.values = values;
     }
 
+    private SecretPatterns getPatterns() {
+        SecretPatterns p = patterns;
+        if (p == null) {
+            p = SecretPatterns.compile(values);
+            patterns = p;
+        }
+        return p;
+    }
+
     @Override
     public OutputStream decorate(OutputStream logger) throws IOException, InterruptedException {
         // TODO better to pick up a standard API from credentials-binding (more efficient)
         // https://github.com/jenkinsci/credentials-binding-plugin/pull/59#discussion_r288735761
+        SecretPatterns.Matcher matcher = getPatterns().matcher();
         return new LineTransformationOutputStream() {
             @Override
             protected void eol(byte[] b, int len) throws IOException {
-                String s = new String(b, 0, len, StandardCharsets.UTF_8);
-                for (String value : values) {
-                    s = s.replace(value, "********");
-                }
-                logger.write(s.getBytes(StandardCharsets.UTF_8));
+                matcher.mask(b, len, logger);
             }
             @Override
             public void flush() throws IOException {
@@ -91,10 +123,40 @@ public final class SecretsMasker extends TaskListenerDecorator {
         };
     }
 
+    /**
+     * Looks up the secrets of the computer a step runs on.
+     * <p>
+     * Secrets are looked up once per computer, as soon as it comes online, so that the first step does not wait for
+     * them. The containers of the pod are inspected concurrently.
+     */
     @Extension
     public static final class Factory extends DynamicContext.Typed<TaskListenerDecorator> {
 
-        private final Map<KubernetesComputer, Set<String>> secrets = new WeakHashMap<>();
+        /**
+         * Maximum number of containers inspected concurrently.
+         */
+        private static final int THREADS = Integer.getInteger(SecretsMasker.class.getName() + ".threads", 10);
+
+        /**
+         * Seconds to wait for the environment of a container.
+         */
+        private static final long EXEC_TIMEOUT = Long.getLong(SecretsMasker.class.getName() + ".execTimeout", 10);
+
+        private static final ExecutorService EXECUTOR = createExecutor();
+
+        /**
+         * Maskers by computer, an empty optional caches the absence of secrets. Entries are removed once the computer
+         * goes offline, or its node is removed.
+         */
+        private static final Map<KubernetesComputer, CompletableFuture<Optional<SecretsMasker>>> secrets =
+                new ConcurrentHashMap<>();
+
+        private static ExecutorService createExecutor() {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new NamingThreadFactory(new DaemonThreadFactory(), "SecretsMasker"));
+            executor.allowCoreThreadTimeOut(true);
+            return new ImpersonatingExecutorService(executor, ACL.SYSTEM);
+        }
 
         @Override
         protected Class<TaskListenerDecorator> type() {
@@ -104,47 +166,78 @@ public final class SecretsMasker extends TaskListenerDecorator {
         @Override
         protected TaskListenerDecorator get(DelegatedContext context) throws IOException, InterruptedException {
             KubernetesComputer c = context.get(KubernetesComputer.class);
-            if (c == null) {
+            if (c == null || c.getChannel() == null) {
                 return null;
             }
-            synchronized (secrets) {
-                if (secrets.containsKey(c)) {
-                    Set<String> values = secrets.get(c);
-                    if (values != null) {
-                        LOGGER.log(Level.FINE, "Using cached secrets for {0}", c);
-                        return TaskListenerDecorator.merge(context.get(TaskListenerDecorator.class), new SecretsMasker(values));
-                    } else {
-                        LOGGER.log(Level.FINE, "Cached absence of secrets for {0}", c);
-                        return null;
-                    }
+            Optional<SecretsMasker> masker;
+            try {
+                masker = discover(c).get();
+            } catch (ExecutionException x) {
+                Throwable cause = x.getCause() instanceof CompletionException ? x.getCause().getCause() : x.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
                 }
+                throw new IOException("failed to look up secrets of " + c.getName(), cause);
             }
-            Set<String> values = secretsOf(c);
-            synchronized (secrets) {
-                secrets.put(c, values);
-            }
-            if (values != null) {
-                LOGGER.fine("masking " + values.size() + " values");
-                return TaskListenerDecorator.merge(context.get(TaskListenerDecorator.class), new SecretsMasker(values));
+            if (masker.isPresent()) {
+                LOGGER.log(Level.FINE, "masking {0} values for {1}", new Object[] {masker.get().values.size(), c});
+                return TaskListenerDecorator.merge(context.get(TaskListenerDecorator.class), masker.get());
             } else {
-                LOGGER.fine("no values to mask");
+                LOGGER.log(Level.FINE, "no values to mask for {0}", c);
                 return null;
             }
         }
 
-        private static @CheckForNull Set<String> secretsOf(KubernetesComputer c) throws IOException, InterruptedException {
-            Channel ch = c.getChannel();
-            if (ch == null) {
-                return null;
+        /**
+         * Starts looking up the secrets of the given computer, unless already done.
+         */
+        static CompletableFuture<Optional<SecretsMasker>> discover(KubernetesComputer c) {
+            CompletableFuture<Optional<SecretsMasker>> existing = secrets.get(c);
+            if (existing != null) {
+                return existing;
+            }
+            CompletableFuture<Optional<SecretsMasker>> created = new CompletableFuture<>();
+            existing = secrets.putIfAbsent(c, created);
+            if (existing != null) {
+                return existing;
             }
+            CompletableFuture.supplyAsync(() -> {
+                try {
+                    return secretsOf(c);
+                } catch (IOException | InterruptedException x) {
+                    throw new CompletionException(x);
+                }
+            }, EXECUTOR).thenCompose(Function.identity()).whenComplete((values, t) -> {
+                if (t != null || c.getChannel() == null) {
+                    // try again next time, or once back online
+                    secrets.remove(c, created);
+                }
+                if (t != null) {
+                    created.completeExceptionally(t);
+                } else {
+                    created.complete(values == null || values.isEmpty() ? Optional.empty() : Optional.of(new SecretsMasker(values)));
+                }
+            });
+            return created;
+        }
+
+        private static CompletableFuture<Set<String>> secretsOf(KubernetesComputer c) throws IOException, InterruptedException {
             KubernetesSlave slave = c.getNode();
             if (slave == null) {
-                return null;
+                return CompletableFuture.completedFuture(null);
+            }
+            Boolean unix = c.isUnix();
+            if (unix == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            Pod pod = podOf(slave);
+            Set<String> values = ConcurrentHashMap.newKeySet();
+            String jnlpMac = c.getJnlpMac();
+            if (jnlpMac != null) {
+                values.add(jnlpMac);
             }
-            Pod pod = slave.getTemplate().build(slave);
-            Set<String> values = new HashSet<>();
-            values.add(c.getJnlpMac());
             LOGGER.finer(() -> "inspecting " + Serialization.asYaml(pod));
+            List<CompletableFuture<Void>> containers = new ArrayList<>();
             for (Container container : pod.getSpec().getContainers()) {
                 Set<String> secretContainerKeys = new TreeSet<>();
                 for (EnvVar envVar : container.getEnv()) {
@@ -158,56 +251,117 @@ public final class SecretsMasker extends TaskListenerDecorator {
                 }
                 if (!secretContainerKeys.isEmpty()) {
                     String containerName = container.getName();
-                    LOGGER.fine(() -> "looking for " + slave.getNamespace() + "/" + slave.getPodName() + "/" + containerName + " secrets named " + secretContainerKeys);
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    Semaphore semaphore = new Semaphore(0);
-                    Boolean unix = c.isUnix();
-                    if (unix == null) {
-                        return null;
-                    }
-                    try (OutputStream errs = new LogTaskListener(LOGGER, Level.FINE).getLogger();
-                         ExecWatch exec = slave.getKubernetesCloud().connect().pods().inNamespace(slave.getNamespace()).withName(slave.getPodName()).inContainer(containerName)
-                            .writingOutput(baos).writingError(errs).writingErrorChannel(errs)
-                            .usingListener(new ExecListener() {
-                                @Override
-                                public void onOpen(Response response) {
-                                }
-                                @Override
-                                public void onFailure(Throwable t, Response response) {
-                                    semaphore.release();
-                                }
-                                @Override
-                                public void onClose(int code, String reason) {
-                                    semaphore.release();
-                                }
-                            })
-                            .exec(unix ? new String[] {"env"} : new String[] {"cmd", "/c", "set"})) {
-                        if (!semaphore.tryAcquire(10, TimeUnit.SECONDS)) {
-                            LOGGER.fine(() -> "time out trying to find environment from " + slave.getNamespace() + "/" + slave.getPodName() + "/" + containerName);
+                    containers.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            values.addAll(secretsOf(slave, containerName, secretContainerKeys, unix));
+                        } catch (IOException | InterruptedException x) {
+                            throw new CompletionException(x);
                         }
-                    } catch (RuntimeException | KubernetesAuthException x) {
-                        LOGGER.log(Level.FINE, "failed to find environment from " + slave.getNamespace() + "/" + slave.getPodName() + "/" + containerName, x);
-                    }
-                    for (String line : baos.toString(StandardCharsets.UTF_8.name()).split("\r?\n")) {
-                        int equals = line.indexOf('=');
-                        if (equals != -1) {
-                            String key = line.substring(0, equals);
-                            if (secretContainerKeys.contains(key)) {
-                                LOGGER.fine(() -> "found value for " + key);
-                                String value = line.substring(equals + 1);
-                                // We add value to set of masked secrets only if it's non-empty not to mask empty strings
-                                if (!value.isEmpty()) {
-                                    values.add(value);
-                                }
-                            }
+                    }, EXECUTOR));
+                }
+            }
+            return CompletableFuture.allOf(containers.toArray(new CompletableFuture[0])).thenApply(v -> values);
+        }
+
+        /**
+         * The pod as seen by the pod cache of the cloud, or else as created by the launcher, rather than built again
+         * from the template.
+         */
+        private static Pod podOf(KubernetesSlave slave) {
+            try {
+                Optional<Pod> cached = PodCache.getCachedPod(slave.getKubernetesCloud(), slave.getNamespace(), slave.getPodName());
+                if (cached != null && cached.isPresent()) {
+                    return cached.get();
+                }
+            } catch (IllegalStateException x) {
+                LOGGER.log(Level.FINE, "cloud of " + slave.getNodeName() + " not found", x);
+            }
+            return slave.getPod().orElseGet(() -> slave.getTemplate().build(slave));
+        }
+
+        /**
+         * Reads the values of the given variables from the environment of a container.
+         */
+        private static Set<String> secretsOf(KubernetesSlave slave, String containerName, Set<String> secretContainerKeys,
+                boolean unix) throws IOException, InterruptedException {
+            LOGGER.fine(() -> "looking for " + slave.getNamespace() + "/" + slave.getPodName() + "/" + containerName + " secrets named " + secretContainerKeys);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            Semaphore semaphore = new Semaphore(0);
+            try (OutputStream errs = new LogTaskListener(LOGGER, Level.FINE).getLogger();
+                 ExecWatch exec = slave.getKubernetesCloud().connect().pods().inNamespace(slave.getNamespace()).withName(slave.getPodName()).inContainer(containerName)
+                    .writingOutput(baos).writingError(errs).writingErrorChannel(errs)
+                    .usingListener(new ExecListener() {
+                        @Override
+                        public void onOpen(Response response) {
+                        }
+                        @Override
+                        public void onFailure(Throwable t, Response response) {
+                            semaphore.release();
+                        }
+                        @Override
+                        public void onClose(int code, String reason) {
+                            semaphore.release();
+                        }
+                    })
+                    .exec(unix ? new String[] {"env"} : new String[] {"cmd", "/c", "set"})) {
+                if (!semaphore.tryAcquire(EXEC_TIMEOUT, TimeUnit.SECONDS)) {
+                    LOGGER.fine(() -> "time out trying to find environment from " + slave.getNamespace() + "/" + slave.getPodName() + "/" + containerName);
+                }
+            } catch (RuntimeException | KubernetesAuthException x) {
+                LOGGER.log(Level.FINE, "failed to find environment from " + slave.getNamespace() + "/" + slave.getPodName() + "/" + containerName, x);
+            }
+            Set<String> values = new HashSet<>();
+            for (String line : baos.toString(StandardCharsets.UTF_8.name()).split("\r?\n")) {
+                int equals = line.indexOf('=');
+                if (equals != -1) {
+                    String key = line.substring(0, equals);
+                    if (secretContainerKeys.contains(key)) {
+                        LOGGER.fine(() -> "found value for " + key);
+                        String value = line.substring(equals + 1);
+                        // We add value to set of masked secrets only if it's non-empty not to mask empty strings
+                        if (!value.isEmpty()) {
+                            values.add(value);
                         }
                     }
-                    // TODO issue a warning if we did not find values for all of secretContainerKeys
                 }
             }
+            // TODO issue a warning if we did not find values for all of secretContainerKeys
             return values;
         }
 
     }
 
+    /**
+     * Looks up secrets while the agent comes online, and forgets them once it goes offline.
+     */
+    @Extension
+    public static class ComputerListenerImpl extends ComputerListener {
+        @Override
+        public void onOnline(Computer c, TaskListener listener) {
+            if (c instanceof KubernetesComputer) {
+                Factory.discover((KubernetesComputer) c);
+            }
+        }
+
+        @Override
+        public void onOffline(@Nonnull Computer c, @CheckForNull OfflineCause cause) {
+            if (c instanceof KubernetesComputer) {
+                Factory.secrets.remove(c);
+            }
+        }
+    }
+
+    /**
+     * Forgets the secrets of removed agents, which may not have gone offline first.
+     */
+    @Extension
+    public static class NodeListenerImpl extends NodeListener {
+        @Override
+        protected void onDeleted(@Nonnull Node node) {
+            if (node instanceof KubernetesSlave) {
+                Factory.secrets.keySet().removeIf(c -> node.getNodeName().equals(c.getName()));
+            }
+        }
+    }
+
 }
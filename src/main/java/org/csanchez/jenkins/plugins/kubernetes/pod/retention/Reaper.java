@@ -16,6 +16,8 @@
 
 package org.csanchez.jenkins.plugins.kubernetes.pod.retention;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.ExtensionList;
@@ -25,34 +27,72 @@ import hudson.model.Node;
 import hudson.model.Queue;
 import hudson.model.Result;
 import hudson.model.TaskListener;
+import hudson.XmlFile;
+import hudson.model.Saveable;
 import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
 import hudson.security.ACL;
 import hudson.security.ACLContext;
 import hudson.slaves.Cloud;
+import hudson.slaves.ComputerLauncher;
 import hudson.slaves.ComputerListener;
 import hudson.slaves.EphemeralNode;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import io.fabric8.kubernetes.api.model.ContainerStateTerminated;
 import io.fabric8.kubernetes.api.model.ContainerStateWaiting;
 import io.fabric8.kubernetes.api.model.ContainerStatus;
 import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.Watch;
 import io.fabric8.kubernetes.client.Watcher;
 import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import javax.annotation.CheckForNull;
 
 import io.fabric8.kubernetes.client.utils.Serialization;
+import jenkins.metrics.api.Metrics;
 import jenkins.model.Jenkins;
+import jenkins.security.ImpersonatingExecutorService;
+import jenkins.util.Timer;
+import org.apache.commons.lang.StringUtils;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesCloud;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesComputer;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesLauncher;
 import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlave;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlaveIndex;
+import org.csanchez.jenkins.plugins.kubernetes.MetricNames;
+import org.csanchez.jenkins.plugins.kubernetes.PodLabel;
+import org.csanchez.jenkins.plugins.kubernetes.PodTemplate;
 import org.csanchez.jenkins.plugins.kubernetes.PodUtils;
 
 /**
@@ -68,6 +108,39 @@ public class Reaper extends ComputerListener implements Watcher<Pod> {
     
     private static final Logger LOGGER = Logger.getLogger(Reaper.class.getName());
 
+    /**
+     * Number of threads checking existing agents when the reaper is activated.
+     */
+    private static final int RECONCILE_THREADS = Integer.getInteger(Reaper.class.getName() + ".reconcileThreads", 8);
+
+    /**
+     * Maximum time in milliseconds to wait for existing agents to be checked before watching all namespaces.
+     */
+    private static final long RECONCILE_TIMEOUT = Long.getLong(Reaper.class.getName() + ".reconcileTimeout",
+            TimeUnit.MINUTES.toMillis(5));
+
+    /**
+     * Number of pods per page when listing pods to check existing agents.
+     */
+    private static final int LIST_PAGE_SIZE = Integer.getInteger(Reaper.class.getName() + ".listPageSize", 500);
+
+    /**
+     * Maximum number of threads calling {@link Listener}s. Events of a given node are always dispatched one at a time.
+     */
+    private static final int DISPATCH_THREADS = Integer.getInteger(Reaper.class.getName() + ".dispatchThreads", 5);
+
+    /**
+     * Initial delay in milliseconds before watching pods again after a watch was closed, doubled on every failure.
+     */
+    private static final long WATCH_RETRY_DELAY = Long.getLong(Reaper.class.getName() + ".watchRetryDelay",
+            TimeUnit.SECONDS.toMillis(1));
+
+    /**
+     * Maximum delay in milliseconds before watching pods again after a watch was closed.
+     */
+    private static final long WATCH_MAX_RETRY_DELAY = Long.getLong(Reaper.class.getName() + ".watchMaxRetryDelay",
+            TimeUnit.MINUTES.toMillis(5));
+
     /**
      * Only useful for tests which shutdown Jenkins without terminating the JVM.
      * Close the watch so that we don't end up with spam in logs
@@ -80,6 +153,23 @@ public class Reaper extends ComputerListener implements Watcher<Pod> {
         }
     }
 
+    /**
+     * Watches the namespaces of new clouds and templates, and stops watching for removed clouds.
+     */
+    @Extension
+    public static class ReaperSaveableListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Jenkins) {
+                Reaper reaper = Reaper.getInstance();
+                if (reaper.activated.get()) {
+                    reaper.watchClouds((Jenkins) o);
+                }
+            }
+            super.onChange(o, file);
+        }
+    }
+
     public static Reaper getInstance() {
         return ExtensionList.lookupSingleton(Reaper.class);
     }
@@ -90,56 +180,236 @@ public class Reaper extends ComputerListener implements Watcher<Pod> {
      */
     private final AtomicBoolean activated = new AtomicBoolean();
 
-    private Watch watch;
+    /**
+     * Watches indexed by cloud name and namespace.
+     */
+    private final Map<String, CloudPodWatcher> watchers = new ConcurrentHashMap<>();
+
+    /**
+     * Pod events waiting for {@link Listener}s to be called, indexed by node name.
+     */
+    private final Map<String, DispatchQueue> dispatchQueues = new ConcurrentHashMap<>();
+
+    /**
+     * Number of pod events waiting for {@link Listener}s to be called, across all nodes.
+     */
+    private final AtomicInteger pendingEvents = new AtomicInteger();
+
+    private final ExecutorService dispatchExecutor = createExecutor(DISPATCH_THREADS, "Reaper listener");
+
+    private final ExecutorService reconcileExecutor = createExecutor(RECONCILE_THREADS, "Reaper");
+
+    private static ExecutorService createExecutor(int threads, String name) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamingThreadFactory(new DaemonThreadFactory(), name));
+        executor.allowCoreThreadTimeOut(true);
+        return new ImpersonatingExecutorService(executor, ACL.SYSTEM);
+    }
 
     @Override
     public void onOnline(Computer c, TaskListener listener) throws IOException, InterruptedException {
-        if (c instanceof KubernetesComputer && activated.compareAndSet(false, true)) {
+        if (!(c instanceof KubernetesComputer)) {
+            return;
+        }
+        if (activated.compareAndSet(false, true)) {
             activate();
+        } else {
+            KubernetesSlave node = ((KubernetesComputer) c).getNode();
+            if (node != null && node.getNamespace() != null) {
+                // the agent may run in a namespace only known once its pod was created
+                watch(node.getCloudName(), node.getNamespace());
+            }
         }
     }
 
     private void activate() {
         LOGGER.fine("Activating reaper");
+        MetricRegistry registry = Metrics.metricRegistry();
+        registry.remove(MetricNames.REAPER_EVENTS_QUEUED);
+        registry.register(MetricNames.REAPER_EVENTS_QUEUED, (Gauge<Integer>) pendingEvents::get);
         // First check all existing nodes to see if they still have active pods.
         // (We may have missed deletion events while Jenkins was shut off,
         // or pods may have been deleted before any Kubernetes agent was brought online.)
-        for (Node n : new ArrayList<>(Jenkins.get().getNodes())) {
-            if (!(n instanceof KubernetesSlave)) {
+        // This is done in the background, the agent coming online must not wait for it.
+        long start = System.currentTimeMillis();
+        CompletableFuture<Void> reconciled = new CompletableFuture<>();
+        reconcileExecutor.execute(() -> {
+            try {
+                reconcileAgents().whenComplete((v, t) -> reconciled.complete(null));
+            } catch (RuntimeException x) {
+                LOGGER.log(Level.WARNING, "failed to do initial reap check", x);
+                reconciled.complete(null);
+            }
+        });
+        ScheduledFuture<?> timeout = Timer.get().schedule(() -> {
+            if (reconciled.complete(null)) {
+                LOGGER.log(Level.WARNING, "Initial reap check still running after {0} ms", RECONCILE_TIMEOUT);
+            }
+        }, RECONCILE_TIMEOUT, TimeUnit.MILLISECONDS);
+        reconciled.thenRunAsync(() -> {
+            timeout.cancel(false);
+            LOGGER.log(Level.FINE, "Initial reap check done in {0} ms", System.currentTimeMillis() - start);
+            // Now set up a watch for any subsequent pod deletions.
+            Jenkins jenkins = Jenkins.getInstanceOrNull();
+            if (jenkins != null) {
+                watchClouds(jenkins);
+            }
+        }, reconcileExecutor);
+    }
+
+    /**
+     * Checks existing agents with a single paged list per cloud and namespace the cloud is configured for.
+     * An agent pod is permitted to use another namespace, but we do not want to do an unnamespaced pod list
+     * for RBAC reasons, so those agents are checked individually.
+     *
+     * @return completed once all agents were checked
+     */
+    private CompletableFuture<Void> reconcileAgents() {
+        Map<String, Map<String, List<KubernetesSlave>>> agents = new HashMap<>();
+        for (KubernetesSlave ks : KubernetesSlaveIndex.getNodes()) {
+            if (ks.getCloudName() != null && ks.getNamespace() != null) {
+                agents.computeIfAbsent(ks.getCloudName(), k -> new HashMap<>())
+                        .computeIfAbsent(ks.getNamespace(), k -> new ArrayList<>())
+                        .add(ks);
+            }
+        }
+        List<CompletableFuture<Void>> checks = new ArrayList<>();
+        for (Map.Entry<String, Map<String, List<KubernetesSlave>>> cloudAgents : agents.entrySet()) {
+            Cloud c = Jenkins.get().getCloud(cloudAgents.getKey());
+            if (!(c instanceof KubernetesCloud)) {
+                LOGGER.log(Level.WARNING, "failed to do initial reap check for agents of unknown cloud {0}", cloudAgents.getKey());
                 continue;
             }
-            KubernetesSlave ks = (KubernetesSlave) n;
-            String ns = ks.getNamespace();
-            String name = ks.getPodName();
+            KubernetesCloud kc = (KubernetesCloud) c;
+            KubernetesClient client;
             try {
-                // TODO more efficient to do a single (or paged) list request, but tricky since there may be multiple clouds,
-                // and even within a single cloud an agent pod is permitted to use a nondefault namespace,
-                // yet we do not want to do an unnamespaced pod list for RBAC reasons.
-                // Could use a hybrid approach: first list all pods in the configured namespace for all clouds;
-                // then go back and individually check any unmatched agents with their configured namespace.
-                if (ks.getKubernetesCloud().connect().pods().inNamespace(ns).withName(name).get() == null) {
-                    LOGGER.info(() -> ns + "/" + name + " seems to have been deleted, so removing corresponding Jenkins agent");
-                    Jenkins.get().removeNode(ks);
+                client = kc.connect();
+            } catch (Exception x) {
+                LOGGER.log(Level.WARNING, "failed to do initial reap check for agents of " + kc.getDisplayName(), x);
+                continue;
+            }
+            Set<String> configuredNamespaces = getConfiguredNamespaces(kc, client);
+            cloudAgents.getValue().forEach((namespace, namespaceAgents) -> {
+                if (configuredNamespaces.contains(namespace)) {
+                    checks.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            String resourceVersion = reconcile(kc, client, namespace, namespaceAgents);
+                            // resume the watch from the list, so that no deletion is missed in between
+                            watch(kc.name, namespace, resourceVersion);
+                        } catch (Exception x) {
+                            LOGGER.log(Level.WARNING, "failed to list pods of " + kc.name + " in " + namespace + ", checking agents individually", x);
+                            namespaceAgents.forEach(ks -> check(client, ks));
+                        }
+                    }, reconcileExecutor));
                 } else {
-                    LOGGER.fine(() -> ns + "/" + name + " still seems to exist, OK");
+                    namespaceAgents.forEach(ks -> checks.add(CompletableFuture.runAsync(() -> check(client, ks), reconcileExecutor)));
                 }
-            } catch (Exception x) {
-                LOGGER.log(Level.WARNING, "failed to do initial reap check for " + ns + "/" + name, x);
+            });
+        }
+        LOGGER.log(Level.FINE, "Checking agents of {0} clouds", agents.size());
+        return CompletableFuture.allOf(checks.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * @return the namespace of the cloud and those of its templates.
+     */
+    private static Set<String> getConfiguredNamespaces(@NonNull KubernetesCloud kc, @NonNull KubernetesClient client) {
+        Set<String> namespaces = new HashSet<>();
+        namespaces.add(StringUtils.defaultIfBlank(kc.getNamespace(), client.getNamespace()));
+        for (PodTemplate template : kc.getTemplates()) {
+            if (StringUtils.isNotBlank(template.getNamespace())) {
+                namespaces.add(template.getNamespace());
+            }
+        }
+        return namespaces;
+    }
+
+    /**
+     * Removes the agent if its pod no longer exists.
+     */
+    private static void check(@NonNull KubernetesClient client, @NonNull KubernetesSlave ks) {
+        String ns = ks.getNamespace();
+        String name = ks.getPodName();
+        if (!isLaunched(ks)) {
+            LOGGER.fine(() -> ns + "/" + name + " is still being launched, not checking it");
+            return;
+        }
+        try {
+            if (client.pods().inNamespace(ns).withName(name).get() == null) {
+                LOGGER.info(() -> ns + "/" + name + " seems to have been deleted, so removing corresponding Jenkins agent");
+                Jenkins.get().removeNode(ks);
+            } else {
+                LOGGER.fine(() -> ns + "/" + name + " still seems to exist, OK");
             }
+        } catch (Exception x) {
+            LOGGER.log(Level.WARNING, "failed to do initial reap check for " + ns + "/" + name, x);
+        }
+    }
+
+    /**
+     * The namespace of an agent is set before its pod is created, which may wait in the queue of the
+     * {@link org.csanchez.jenkins.plugins.kubernetes.PodCreationLimiter} for a while, so a missing pod only means the
+     * agent is gone once its launch completed.
+     */
+    private static boolean isLaunched(@NonNull KubernetesSlave ks) {
+        Computer computer = ks.toComputer();
+        if (computer instanceof KubernetesComputer && ((KubernetesComputer) computer).isLaunching()) {
+            return false;
         }
-        // Now set up a watch for any subsequent pod deletions.
-        for (Cloud c : Jenkins.get().clouds) {
+        ComputerLauncher launcher = ks.getLauncher();
+        return !(launcher instanceof KubernetesLauncher) || ((KubernetesLauncher) launcher).isLaunched();
+    }
+
+    /**
+     * Watches every namespace agents of the configured clouds may run in: the namespace of the cloud, those of its
+     * templates, and those of existing agents.
+     */
+    private void watchClouds(@NonNull Jenkins jenkins) {
+        Set<String> keys = new HashSet<>();
+        for (Cloud c : jenkins.clouds) {
             if (!(c instanceof KubernetesCloud)) {
                 continue;
             }
             KubernetesCloud kc = (KubernetesCloud) c;
+            Set<String> namespaces;
             try {
-                KubernetesClient client = kc.connect();
-                watch = client.pods().inNamespace(client.getNamespace()).watch(this);
+                namespaces = getConfiguredNamespaces(kc, kc.connect());
             } catch (Exception x) {
                 LOGGER.log(Level.WARNING, "failed to set up watcher on " + kc.getDisplayName(), x);
+                continue;
+            }
+            for (KubernetesSlave ks : KubernetesSlaveIndex.getNodes(kc.name)) {
+                if (ks.getNamespace() != null) {
+                    namespaces.add(ks.getNamespace());
+                }
+            }
+            for (String namespace : namespaces) {
+                keys.add(watch(kc.name, namespace).getKey());
             }
         }
+        watchers.forEach((key, watcher) -> {
+            if (!keys.contains(key)) {
+                watcher.close();
+            }
+        });
+    }
+
+    @NonNull
+    CloudPodWatcher watch(@NonNull String cloudName, @NonNull String namespace) {
+        return watch(cloudName, namespace, null);
+    }
+
+    @NonNull
+    private CloudPodWatcher watch(@NonNull String cloudName, @NonNull String namespace, @CheckForNull String resourceVersion) {
+        AtomicBoolean created = new AtomicBoolean();
+        CloudPodWatcher watcher = watchers.computeIfAbsent(cloudName + "/" + namespace, key -> {
+            created.set(true);
+            return new CloudPodWatcher(cloudName, namespace, resourceVersion);
+        });
+        if (created.get()) {
+            watcher.start();
+        }
+        return watcher;
     }
 
     @Override
@@ -154,9 +424,29 @@ public class Reaper extends ComputerListener implements Watcher<Pod> {
         if (!optionalNode.isPresent()) {
             return;
         }
+        // Listeners may take a while, e.g. to terminate the agent, and must not hold the watch thread
+        String nodeName = optionalNode.get().getNodeName();
+        dispatchQueues.compute(nodeName, (k, queue) -> {
+            if (queue == null) {
+                queue = new DispatchQueue(nodeName);
+            }
+            queue.offer(action, pod);
+            return queue;
+        });
+    }
+
+    private void dispatch(@NonNull String nodeName, @NonNull Watcher.Action action, @NonNull Pod pod) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        Node node = jenkins == null ? null : jenkins.getNode(nodeName);
+        if (!(node instanceof KubernetesSlave)) {
+            // removed while the event was queued
+            return;
+        }
+        String ns = pod.getMetadata().getNamespace();
+        String name = pod.getMetadata().getName();
         ExtensionList.lookup(Listener.class).forEach(listener -> {
             try {
-                listener.onEvent(action, optionalNode.get(), pod);
+                listener.onEvent(action, (KubernetesSlave) node, pod);
             } catch (Exception x) {
                 LOGGER.log(Level.WARNING, "Listener " + listener + " failed for " + ns + "/" + name, x);
             }
@@ -164,25 +454,229 @@ public class Reaper extends ComputerListener implements Watcher<Pod> {
     }
 
     private static Optional<KubernetesSlave> resolveNode(@NonNull Jenkins jenkins, String namespace, String name) {
-        return new ArrayList<>(jenkins.getNodes()).stream()
-                .filter(KubernetesSlave.class::isInstance)
-                .map(KubernetesSlave.class::cast)
-                .filter(ks -> Objects.equals(ks.getNamespace(), namespace) && Objects.equals(ks.getPodName(), name))
-                .findFirst();
+        return KubernetesSlaveIndex.get(namespace, name);
     }
 
     @Override
     public void onClose(KubernetesClientException cause) {
-        // TODO ignore, or do we need to manually reattach the watcher?
-        // AllContainersRunningPodWatcher is not reattached, but this is expected to be short-lived,
-        // useful only until the containers of a single pod start running.
-        // (At least when using kubernetes-client/java, the connection gets closed after 2m on GKE
-        // and you need to rerun the watch. Does the fabric8io client wrap this?)
+        // Each watch is reattached by its CloudPodWatcher
     }
 
     private void closeWatch() {
-        if (watch != null) {
-            watch.close();
+        for (CloudPodWatcher watcher : new ArrayList<>(watchers.values())) {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Lists the agent pods of the given cloud in the given namespace, page by page, and removes the given agents whose
+     * pod no longer exists. Pods are listed by the labels of the cloud, an agent whose pod is not listed is looked up
+     * individually before being removed, in case the labels of the cloud were changed since its pod was created.
+     *
+     * @return the resource version of the list
+     */
+    private static String reconcile(@NonNull KubernetesCloud kc, @NonNull KubernetesClient client, @NonNull String namespace,
+            @NonNull Collection<KubernetesSlave> agents) {
+        Set<String> names = new HashSet<>();
+        String resourceVersion = null;
+        String continueToken = null;
+        do {
+            PodList page = client.pods().inNamespace(namespace).withLabels(getPodLabels(kc)).list(LIST_PAGE_SIZE, continueToken);
+            page.getItems().forEach(p -> names.add(p.getMetadata().getName()));
+            if (resourceVersion == null) {
+                // all pages are consistent with the first one
+                resourceVersion = page.getMetadata().getResourceVersion();
+            }
+            continueToken = page.getMetadata().getContinue();
+        } while (StringUtils.isNotEmpty(continueToken));
+        LOGGER.log(Level.FINE, "Listed {0} pods of {1} in {2} for {3} agents",
+                new Object[] {names.size(), kc.name, namespace, agents.size()});
+        for (KubernetesSlave ks : agents) {
+            if (!names.contains(ks.getPodName())) {
+                check(client, ks);
+            }
+        }
+        return resourceVersion;
+    }
+
+    private static Map<String, String> getPodLabels(@NonNull KubernetesCloud kc) {
+        Map<String, String> labels = new HashMap<>();
+        for (PodLabel label : kc.getPodLabels()) {
+            labels.put(label.getKey(), label.getValue());
+        }
+        return labels;
+    }
+
+    /**
+     * Pod events of one node, dispatched in order by a single task at a time. A {@link Watcher.Action#MODIFIED} event
+     * replaces the previous one if it was not dispatched yet, as only the latest state of the pod matters.
+     */
+    private final class DispatchQueue {
+        private final String nodeName;
+        private final Deque<Map.Entry<Watcher.Action, Pod>> events = new ArrayDeque<>();
+        private boolean scheduled;
+
+        DispatchQueue(String nodeName) {
+            this.nodeName = nodeName;
+        }
+
+        synchronized void offer(Watcher.Action action, Pod pod) {
+            Map.Entry<Watcher.Action, Pod> last = events.peekLast();
+            if (action == Watcher.Action.MODIFIED && last != null && last.getKey() == Watcher.Action.MODIFIED) {
+                events.pollLast();
+                Metrics.metricRegistry().counter(MetricNames.REAPER_EVENTS_COALESCED).inc();
+            } else {
+                pendingEvents.incrementAndGet();
+            }
+            events.add(new AbstractMap.SimpleImmutableEntry<>(action, pod));
+            if (!scheduled) {
+                scheduled = true;
+                dispatchExecutor.execute(this::run);
+            }
+        }
+
+        @CheckForNull
+        private synchronized Map.Entry<Watcher.Action, Pod> poll() {
+            Map.Entry<Watcher.Action, Pod> event = events.poll();
+            if (event != null) {
+                pendingEvents.decrementAndGet();
+            }
+            return event;
+        }
+
+        /**
+         * @return true if no event is left, in which case the queue must be discarded.
+         */
+        private synchronized boolean finishIfEmpty() {
+            if (events.isEmpty()) {
+                scheduled = false;
+                return true;
+            }
+            return false;
+        }
+
+        private void run() {
+            while (true) {
+                Map.Entry<Watcher.Action, Pod> event = poll();
+                if (event != null) {
+                    dispatch(nodeName, event.getKey(), event.getValue());
+                    continue;
+                }
+                // Serialized with offer() so that no event is left behind in a discarded queue
+                if (dispatchQueues.computeIfPresent(nodeName, (k, queue) -> queue.finishIfEmpty() ? null : queue) == null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Watch on the agent pods of one cloud in one namespace, which reattaches itself when closed by the API server.
+     * <p>
+     * The watch is resumed from the last resource version seen, so no event is missed. If that version is too old
+     * ({@code 410 Gone}), pods are listed again to remove agents whose pod was deleted in the meantime.
+     */
+    final class CloudPodWatcher implements Watcher<Pod> {
+        private final String cloudName;
+        private final String namespace;
+
+        @CheckForNull
+        private volatile String resourceVersion;
+        @CheckForNull
+        private Watch watch;
+        private boolean closed;
+        private boolean relist;
+        private int failures;
+
+        CloudPodWatcher(String cloudName, String namespace, @CheckForNull String resourceVersion) {
+            this.cloudName = cloudName;
+            this.namespace = namespace;
+            this.resourceVersion = resourceVersion;
+        }
+
+        String getKey() {
+            return cloudName + "/" + namespace;
+        }
+
+        synchronized void start() {
+            if (closed) {
+                return;
+            }
+            Jenkins jenkins = Jenkins.getInstanceOrNull();
+            Cloud cloud = jenkins == null ? null : jenkins.getCloud(cloudName);
+            if (!(cloud instanceof KubernetesCloud)) {
+                close();
+                return;
+            }
+            try {
+                KubernetesCloud kc = (KubernetesCloud) cloud;
+                KubernetesClient client = kc.connect();
+                if (relist) {
+                    List<KubernetesSlave> agents = KubernetesSlaveIndex.getNodes(cloudName).stream()
+                            .filter(ks -> namespace.equals(ks.getNamespace()))
+                            .collect(Collectors.toList());
+                    resourceVersion = reconcile(kc, client, namespace, agents);
+                    relist = false;
+                }
+                watch = client.pods().inNamespace(namespace).withLabels(getPodLabels(kc)).watch(resourceVersion, this);
+                LOGGER.log(Level.FINE, "Watching pods of cloud {0} in namespace {1} from version {2}",
+                        new Object[] {cloudName, namespace, resourceVersion});
+            } catch (Exception x) {
+                LOGGER.log(Level.WARNING, "failed to set up watcher on " + getKey(), x);
+                scheduleRestart();
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            watchers.remove(getKey(), this);
+            if (watch != null) {
+                watch.close();
+                watch = null;
+            }
+        }
+
+        @Override
+        public void eventReceived(Action action, Pod pod) {
+            if (action == Action.ERROR) {
+                return;
+            }
+            synchronized (this) {
+                failures = 0;
+            }
+            resourceVersion = pod.getMetadata().getResourceVersion();
+            if (action == Action.DELETED && pod.getMetadata().getDeletionTimestamp() != null) {
+                try {
+                    long lag = System.currentTimeMillis() - Instant.parse(pod.getMetadata().getDeletionTimestamp()).toEpochMilli();
+                    Metrics.metricRegistry().histogram(MetricNames.REAPER_EVENT_LAG).update(Math.max(0, lag));
+                } catch (DateTimeParseException x) {
+                    LOGGER.log(Level.FINE, "Unexpected deletion timestamp " + pod.getMetadata().getDeletionTimestamp(), x);
+                }
+            }
+            Reaper.this.eventReceived(action, pod);
+        }
+
+        @Override
+        public synchronized void onClose(KubernetesClientException cause) {
+            if (closed) {
+                return;
+            }
+            watch = null;
+            Metrics.metricRegistry().counter(MetricNames.REAPER_WATCH_RESTARTS).inc();
+            if (cause != null && cause.getCode() == HttpURLConnection.HTTP_GONE) {
+                LOGGER.log(Level.FINE, "Resource version {0} of {1} is too old, listing pods again", new Object[] {resourceVersion, getKey()});
+                relist = true;
+                resourceVersion = null;
+            } else {
+                LOGGER.log(Level.FINE, "Watch of " + getKey() + " closed, watching again", cause);
+            }
+            scheduleRestart();
+        }
+
+        private void scheduleRestart() {
+            long delay = Math.min(WATCH_MAX_RETRY_DELAY, WATCH_RETRY_DELAY << Math.min(failures, 20));
+            failures++;
+            Timer.get().schedule(this::start, delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1), TimeUnit.MILLISECONDS);
         }
     }
 
@@ -0,0 +1,66 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.fabric8.kubernetes.api.model.ContainerBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.Watcher;
+
+public class AllContainersRunningPodWatcherTest {
+
+    @Test
+    public void tracksPodChanges() throws Exception {
+        AllContainersRunningPodWatcher watcher = new AllContainersRunningPodWatcher(null, pod("Pending"), null);
+        Pod running = pod("Running");
+        watcher.eventReceived(Watcher.Action.MODIFIED, running);
+        assertSame(running, watcher.getPod());
+        assertEquals("Running", watcher.getPodStatus().getPhase());
+
+        watcher.eventReceived(Watcher.Action.DELETED, running);
+        assertNull(watcher.getPod());
+    }
+
+    @Test
+    public void changesNotifyListeners() throws Exception {
+        AllContainersRunningPodWatcher watcher = new AllContainersRunningPodWatcher(null, pod("Pending"), null);
+        AtomicInteger changes = new AtomicInteger();
+        watcher.addChangeListener(changes::incrementAndGet);
+        watcher.signalChange();
+        watcher.eventReceived(Watcher.Action.MODIFIED, pod("Running"));
+        assertEquals(2, changes.get());
+
+        assertTrue(watcher.isWatching());
+        watcher.onClose(null);
+        assertFalse(watcher.isWatching());
+        assertEquals(3, changes.get());
+    }
+
+    @Test
+    public void deletionFailsRunningFuture() throws Exception {
+        Pod pending = pod("Pending");
+        pending.getSpec().getContainers().add(new ContainerBuilder().withName("jnlp").build());
+        AllContainersRunningPodWatcher watcher = new AllContainersRunningPodWatcher(null, pending, null);
+        CompletableFuture<Pod> running = watcher.whenAllContainersRunning();
+        assertFalse(running.isDone());
+        watcher.update(null);
+        assertTrue(running.isCompletedExceptionally());
+    }
+
+    private static Pod pod(String phase) {
+        return new PodBuilder()
+                .withNewMetadata().withName("agent").withNamespace("ns").endMetadata()
+                .withNewSpec().endSpec()
+                .withNewStatus().withPhase(phase).endStatus()
+                .build();
+    }
+}
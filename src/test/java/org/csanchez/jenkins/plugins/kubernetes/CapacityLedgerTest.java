@@ -0,0 +1,58 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CapacityLedgerTest {
+
+    @Test
+    public void reservationsAreBoundedByGlobalAndTemplateSlots() {
+        CapacityLedger ledger = new CapacityLedger();
+        PodTemplate java = template("java");
+        PodTemplate go = template("go");
+
+        assertTrue(ledger.reserve("java-1", java, 3, 2));
+        assertTrue(ledger.reserve("java-2", java, 3, 2));
+        assertFalse("template cap reached", ledger.reserve("java-3", java, 3, 2));
+        assertTrue(ledger.reserve("go-1", go, 3, 5));
+        assertFalse("global cap reached across labels", ledger.reserve("go-2", go, 3, 5));
+
+        assertEquals(3, ledger.getReserved());
+        assertEquals(2, ledger.getReserved(java));
+        assertEquals(1, ledger.getReserved(go));
+    }
+
+    @Test
+    public void releaseIsIdempotent() {
+        CapacityLedger ledger = new CapacityLedger();
+        PodTemplate java = template("java");
+        assertTrue(ledger.reserve("java-1", java, 1, 1));
+        ledger.release("java-1");
+        ledger.release("java-1");
+        ledger.release("unknown");
+        assertEquals(0, ledger.getReserved());
+        assertEquals(0, ledger.getReserved(java));
+        assertTrue(ledger.reserve("java-2", java, 1, 1));
+    }
+
+    @Test
+    public void staleReservationsExpire() {
+        CapacityLedger ledger = new CapacityLedger();
+        PodTemplate java = template("java");
+        assertTrue(ledger.reserve("java-1", java, 1, 1));
+        ledger.expireReservationsOlderThan(0);
+        assertEquals(1, ledger.getReserved());
+        ledger.expireReservationsOlderThan(Long.MAX_VALUE);
+        assertEquals(0, ledger.getReserved());
+        assertEquals(0, ledger.getReserved(java));
+    }
+
+    private static PodTemplate template(String label) {
+        PodTemplate template = new PodTemplate();
+        template.setLabel(label);
+        return template;
+    }
+}
@@ -0,0 +1,156 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.dsl.LogWatch;
+
+public class ContainerLogBufferTest {
+
+    private final List<PipedOutputStream> openStreams = new ArrayList<>();
+
+    @Test
+    public void readsFromOffset() {
+        ContainerLogBuffer log = new ContainerLogBuffer("ns/pod/container", 16);
+        append(log, "hello ");
+        ContainerLogBuffer.Chunk chunk = log.read(0);
+        assertEquals("hello ", text(chunk));
+        assertEquals(6, chunk.end);
+        assertFalse(chunk.complete);
+
+        append(log, "world\n");
+        chunk = log.read(chunk.end);
+        assertEquals("world\n", text(chunk));
+        assertEquals(12, chunk.end);
+        assertEquals("", text(log.read(12)));
+    }
+
+    @Test
+    public void keepsOnlyTheTail() {
+        ContainerLogBuffer log = new ContainerLogBuffer("ns/pod/container", 8);
+        append(log, "0123456");
+        append(log, "789abc");
+        assertEquals(13, log.getWritten());
+        // older bytes were overwritten
+        assertEquals("56789abc", text(log.read(0)));
+        assertEquals("9abc", text(log.read(9)));
+
+        append(log, "a larger chunk than the buffer");
+        assertEquals("e buffer", text(log.read(13)));
+        assertEquals(43, log.read(13).end);
+    }
+
+    @Test
+    public void offsetOfPreviousStreamStartsOver() {
+        ContainerLogBuffer log = new ContainerLogBuffer("ns/pod/container", 8);
+        append(log, "abc");
+        assertEquals("abc", text(log.read(1000)));
+    }
+
+    @Test
+    public void endedStreamIsFollowedAgain() throws Exception {
+        KubernetesClient client = mock(KubernetesClient.class, RETURNS_DEEP_STUBS);
+        watch(client, "container", stream("first run\n"));
+        ContainerLogBuffer first = ContainerLogBuffer.get(client, "ns", "pod", "container");
+        awaitCompleted(first);
+        assertEquals("first run\n", text(first.read(0)));
+
+        watch(client, "container", stream("second run\n"));
+        ContainerLogBuffer second = ContainerLogBuffer.get(client, "ns", "pod", "container");
+        assertNotSame("the container restarted", first, second);
+        awaitCompleted(second);
+        assertEquals("second run\n", text(second.read(0)));
+    }
+
+    @Test
+    public void leastRecentlyViewedLogIsClosedBeyondLimit() throws Exception {
+        int maxBuffers = ContainerLogBuffer.MAX_BUFFERS;
+        ContainerLogBuffer.MAX_BUFFERS = 2;
+        try {
+            KubernetesClient client = mock(KubernetesClient.class, RETURNS_DEEP_STUBS);
+            LogWatch a = watch(client, "a", openStream());
+            LogWatch b = watch(client, "b", openStream());
+            LogWatch c = watch(client, "c", openStream());
+            ContainerLogBuffer.get(client, "ns", "pod", "a");
+            Thread.sleep(10);
+            ContainerLogBuffer.get(client, "ns", "pod", "b");
+            Thread.sleep(10);
+            ContainerLogBuffer.get(client, "ns", "pod", "a");
+            Thread.sleep(10);
+            ContainerLogBuffer.get(client, "ns", "pod", "c");
+
+            verify(b).close();
+            verify(a, never()).close();
+            verify(c, never()).close();
+        } finally {
+            ContainerLogBuffer.MAX_BUFFERS = maxBuffers;
+        }
+    }
+
+    @After
+    public void closeAll() throws IOException {
+        ContainerLogBuffer.closeAll();
+        for (PipedOutputStream stream : openStreams) {
+            stream.close();
+        }
+    }
+
+    /**
+     * @return a log stream kept open until the end of the test
+     */
+    private InputStream openStream() throws IOException {
+        PipedOutputStream out = new PipedOutputStream();
+        openStreams.add(out);
+        return new PipedInputStream(out);
+    }
+
+    private static InputStream stream(String log) {
+        return new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static LogWatch watch(KubernetesClient client, String container, InputStream output) {
+        LogWatch watch = mock(LogWatch.class);
+        when(watch.getOutput()).thenReturn(output);
+        when(client.pods().inNamespace("ns").withName("pod").inContainer(container).tailingLines(anyInt()).watchLog())
+                .thenReturn(watch);
+        return watch;
+    }
+
+    private static void awaitCompleted(ContainerLogBuffer log) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!log.isCompleted() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(log.isCompleted());
+    }
+
+    private static void append(ContainerLogBuffer log, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        log.append(bytes, 0, bytes.length);
+    }
+
+    private static String text(ContainerLogBuffer.Chunk chunk) {
+        return new String(chunk.bytes, StandardCharsets.UTF_8);
+    }
+}
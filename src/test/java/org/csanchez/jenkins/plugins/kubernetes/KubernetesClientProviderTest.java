@@ -0,0 +1,33 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+
+public class KubernetesClientProviderTest {
+
+    @Test
+    public void rotatedCredentialsKeepConnection() {
+        Config current = new ConfigBuilder().withMasterUrl("https://k8s.example.com").withOauthToken("token-1").build();
+        Config fresh = new ConfigBuilder().withMasterUrl("https://k8s.example.com").withOauthToken("token-2").build();
+        assertTrue(KubernetesClientProvider.isSameConnection(current, fresh));
+
+        fresh = new ConfigBuilder().withMasterUrl("https://k8s.example.com").withUsername("bob").withPassword("secret").build();
+        assertTrue(KubernetesClientProvider.isSameConnection(current, fresh));
+    }
+
+    @Test
+    public void changedTransportReplacesConnection() {
+        Config current = new ConfigBuilder().withMasterUrl("https://k8s.example.com").withOauthToken("token").build();
+        assertFalse(KubernetesClientProvider.isSameConnection(current,
+                new ConfigBuilder().withMasterUrl("https://other.example.com").withOauthToken("token").build()));
+        assertFalse(KubernetesClientProvider.isSameConnection(current,
+                new ConfigBuilder().withMasterUrl("https://k8s.example.com").withClientCertData("cert").build()));
+        assertFalse(KubernetesClientProvider.isSameConnection(current,
+                new ConfigBuilder().withMasterUrl("https://k8s.example.com").withTrustCerts(true).build()));
+    }
+}
@@ -3,6 +3,7 @@ package org.csanchez.jenkins.plugins.kubernetes;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -47,6 +48,7 @@ import org.jvnet.hudson.test.recipes.LocalData;
 import org.mockito.Mockito;
 
 import hudson.model.Label;
+import hudson.slaves.Cloud;
 import hudson.slaves.NodeProvisioner;
 import io.fabric8.kubernetes.api.model.DoneablePod;
 import io.fabric8.kubernetes.api.model.Pod;
@@ -203,10 +205,12 @@ public class KubernetesCloudTest {
 
         Collection<NodeProvisioner.PlannedNode> plannedNodes = cloud.provision(test, 200);
         assertEquals(200, plannedNodes.size());
+        releasePlannedNodes(cloud, plannedNodes);
 
         podTemplate.setInstanceCap(5);
         plannedNodes = cloud.provision(test, 200);
         assertEquals(5, plannedNodes.size());
+        releasePlannedNodes(cloud, plannedNodes);
     }
 
     @Test
@@ -238,11 +242,54 @@ public class KubernetesCloudTest {
 
         Collection<NodeProvisioner.PlannedNode> plannedNodes = cloud.provision(test, 200);
         assertEquals(200, plannedNodes.size());
+        releasePlannedNodes(cloud, plannedNodes);
 
         cloud.setContainerCapStr("10");
         podTemplate.setInstanceCap(20);
         plannedNodes = cloud.provision(test, 200);
         assertEquals(10, plannedNodes.size());
+        releasePlannedNodes(cloud, plannedNodes);
+    }
+
+    @Test
+    public void warmPoolAgentsRespectInstanceCap() throws Exception {
+        KubernetesCloud cloud = new KubernetesCloud("warm") {
+            @Override
+            public KubernetesClient connect() {
+                KubernetesClient mockClient =  Mockito.mock(KubernetesClient.class);
+                Mockito.when(mockClient.getNamespace()).thenReturn("default");
+                MixedOperation<Pod, PodList, DoneablePod, PodResource<Pod, DoneablePod>> operation = Mockito.mock(MixedOperation.class);
+                Mockito.when(operation.inNamespace(Mockito.anyString())).thenReturn(operation);
+                Mockito.when(operation.withLabels(Mockito.anyMap())).thenReturn(operation);
+                PodList podList = Mockito.mock(PodList.class);
+                Mockito.when(podList.getItems()).thenReturn(new ArrayList<>());
+                Mockito.when(operation.list()).thenReturn(podList);
+                Mockito.when(mockClient.pods()).thenReturn(operation);
+                return mockClient;
+            }
+        };
+
+        PodTemplate podTemplate = new PodTemplate();
+        podTemplate.setName("warm");
+        podTemplate.setLabel("warm");
+        podTemplate.setInstanceCap(3);
+        podTemplate.setWarmPoolSize(5);
+        cloud.addTemplate(podTemplate);
+
+        List<KubernetesSlave> agents = cloud.createWarmPoolAgents(podTemplate, 5);
+        assertEquals(3, agents.size());
+        CapacityLedger ledger = CapacityLedger.get(cloud);
+        assertEquals(3, ledger.getReserved(podTemplate));
+        assertTrue("pool agents count against the instance cap", cloud.createWarmPoolAgents(podTemplate, 5).isEmpty());
+        agents.forEach(agent -> ledger.release(agent.getNodeName()));
+    }
+
+    /**
+     * Planned nodes are discarded without being launched, so their capacity reservations are given back.
+     */
+    private static void releasePlannedNodes(KubernetesCloud cloud, Collection<NodeProvisioner.PlannedNode> plannedNodes) {
+        CapacityLedger ledger = CapacityLedger.get(cloud);
+        plannedNodes.forEach(plannedNode -> ledger.release(plannedNode.displayName));
     }
 
     @Test
@@ -384,7 +431,7 @@ public class KubernetesCloudTest {
     public void readResolveContainerCapZero() {
         KubernetesCloud cloud = j.jenkins.clouds.get(KubernetesCloud.class);
         assertEquals(cloud.getContainerCap(), Integer.MAX_VALUE);
-        assertThat(cloud.getRemainingGlobalSlots(Collections.emptyList(), 1), greaterThan(0));
+        assertThat(cloud.getRemainingGlobalSlots(PodLabelIndex.of(Collections.emptyList()), 1), greaterThan(0));
     }
 
     public HtmlInput getInputByName(DomElement root, String name) {
@@ -401,16 +448,17 @@ public class KubernetesCloudTest {
     public void globalLimit() {
         KubernetesCloud cloud = new KubernetesCloud("kubernetes");
         cloud.setContainerCap(10);
-        assertEquals(10, cloud.getRemainingGlobalSlots(Collections.emptyList(), 0));
-        assertEquals(0, cloud.getRemainingGlobalSlots(Collections.emptyList(), 10));
+        assertEquals(10, cloud.getRemainingGlobalSlots(PodLabelIndex.of(Collections.emptyList()), 0));
+        assertEquals(0, cloud.getRemainingGlobalSlots(PodLabelIndex.of(Collections.emptyList()), 10));
         List<Pod> pods = new ArrayList<>();
         for (int i = 0; i < 5; i++) {
             Pod pod = new Pod();
             pods.add(pod);
         }
-        assertEquals(5, cloud.getRemainingGlobalSlots(pods, 0));
-        assertEquals(2, cloud.getRemainingGlobalSlots(pods, 3));
-        assertEquals(0, cloud.getRemainingGlobalSlots(pods, 5));
+        PodLabelIndex index = PodLabelIndex.of(pods);
+        assertEquals(5, cloud.getRemainingGlobalSlots(index, 0));
+        assertEquals(2, cloud.getRemainingGlobalSlots(index, 3));
+        assertEquals(0, cloud.getRemainingGlobalSlots(index, 5));
     }
 
     @Test
@@ -423,11 +471,34 @@ public class KubernetesCloudTest {
         List<Pod> pods = new ArrayList<>();
         addPod(pods, pt1);
         addPod(pods, pt2);
+        PodLabelIndex index = PodLabelIndex.of(pods);
+
+        assertEquals(0, cloud.getRemainingPodTemplateSlots(pt1, index, 0));
+        assertEquals(0, cloud.getRemainingPodTemplateSlots(pt2, index, 0));
+        assertEquals(1, cloud.getRemainingPodTemplateSlots(pt3, index, 0));
+        assertEquals(0, cloud.getRemainingPodTemplateSlots(pt3, index, 1));
+    }
 
-        assertEquals(0, cloud.getRemainingPodTemplateSlots(pt1, pods, 0));
-        assertEquals(0, cloud.getRemainingPodTemplateSlots(pt2, pods, 0));
-        assertEquals(1, cloud.getRemainingPodTemplateSlots(pt3, pods, 0));
-        assertEquals(0, cloud.getRemainingPodTemplateSlots(pt3, pods, 1));
+    @Test
+    public void templateResolutionFollowsTemplateChanges() {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        PodTemplate pt1 = addPodTemplate(cloud, "label1", 1);
+        Label label1 = Label.get("label1");
+        Label label2 = Label.get("label2");
+        assertEquals(Collections.singletonList(pt1), cloud.getTemplatesFor(label1));
+        assertTrue(cloud.canProvision(new Cloud.CloudState(label1, 0)));
+        assertTrue(cloud.getTemplatesFor(label2).isEmpty());
+
+        PodTemplate dynamic = new PodTemplate();
+        dynamic.setLabel("label2");
+        cloud.addDynamicTemplate(dynamic);
+        assertEquals(Collections.singletonList(dynamic), cloud.getTemplatesFor(label2));
+        cloud.removeDynamicTemplate(dynamic);
+        assertTrue(cloud.getTemplatesFor(label2).isEmpty());
+
+        cloud.removeTemplate(pt1);
+        assertNull(cloud.getTemplate(label1));
+        assertFalse(cloud.canProvision(new Cloud.CloudState(label1, 0)));
     }
 
     private void addPod(List<Pod> pods, PodTemplate pt1) {
@@ -0,0 +1,151 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.slaves.JNLPLauncher;
+import hudson.slaves.RetentionStrategy;
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.EventBuilder;
+import io.fabric8.kubernetes.api.model.EventList;
+import io.fabric8.kubernetes.api.model.EventListBuilder;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import io.fabric8.kubernetes.client.dsl.PodResource;
+import io.fabric8.kubernetes.client.dsl.base.OperationContext;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.SharedInformerFactory;
+import io.fabric8.kubernetes.client.informers.cache.Indexer;
+
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class KubernetesComputerTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private KubernetesClient client;
+    private PodResource podResource;
+    private FilterWatchListDeletable podEvents;
+    private KubernetesCloud cloud;
+    private KubernetesComputer computer;
+
+    @Before
+    public void setUp() throws Exception {
+        client = mock(KubernetesClient.class, RETURNS_DEEP_STUBS);
+        podResource = mock(PodResource.class);
+        when(client.pods().inNamespace("ns").withName("agent")).thenReturn(podResource);
+        when(podResource.get()).thenReturn(new PodBuilder()
+                .withNewMetadata().withName("agent").withNamespace("ns").withUid("uid-1").endMetadata()
+                .withNewSpec().addNewContainer().withName("jnlp").endContainer().endSpec()
+                .build());
+        Map<String, String> fields = new HashMap<>();
+        fields.put("involvedObject.uid", "uid-1");
+        fields.put("involvedObject.name", "agent");
+        fields.put("involvedObject.namespace", "ns");
+        podEvents = mock(FilterWatchListDeletable.class);
+        when(client.events().inNamespace("ns").withFields(eq(fields))).thenReturn(podEvents);
+        when(podEvents.list()).thenReturn(new EventListBuilder()
+                .withItems(event("uid-1", "Scheduled", "2020-01-01T00:00:00Z"), event("uid-1", "Pulled", "2020-01-01T00:00:01Z"))
+                .build());
+
+        cloud = new KubernetesCloud("computerTest") {
+            @Override
+            public KubernetesClient connect() {
+                return client;
+            }
+        };
+        cloud.setNamespace("ns");
+        j.jenkins.clouds.add(cloud);
+        PodTemplate template = new PodTemplate();
+        template.setName("test");
+        cloud.addTemplate(template);
+        KubernetesSlave agent = KubernetesSlave.builder()
+                .name("agent")
+                .podTemplate(template)
+                .cloud(cloud)
+                .computerLauncher(new JNLPLauncher(false))
+                .retentionStrategy(RetentionStrategy.NOOP)
+                .build();
+        agent.setNamespace("ns");
+        j.jenkins.addNode(agent);
+        computer = (KubernetesComputer) agent.toComputer();
+    }
+
+    @Test
+    public void podAndEventsAreReusedWithinSnapshotTtl() throws Exception {
+        assertEquals(1, computer.getContainers().size());
+        List<Event> events = computer.getPodEvents();
+        assertEquals(2, events.size());
+        assertEquals("Pulled", events.get(1).getReason());
+        assertEquals(events, computer.getPodEvents());
+        assertEquals(1, computer.getContainers().size());
+
+        verify(podResource, times(1)).get();
+        verify(podEvents, times(1)).list();
+    }
+
+    @Test
+    public void eventsAreTakenFromInformer() throws Exception {
+        SharedInformerFactory factory = mock(SharedInformerFactory.class);
+        SharedIndexInformer<Event> informer = mock(SharedIndexInformer.class);
+        Indexer<Event> indexer = mock(Indexer.class);
+        when(client.informers()).thenReturn(factory);
+        when(factory.sharedIndexInformerFor(eq(Event.class), eq(EventList.class), any(OperationContext.class), eq(0L)))
+                .thenReturn(informer);
+        when(informer.hasSynced()).thenReturn(true);
+        when(informer.getIndexer()).thenReturn(indexer);
+        when(indexer.byIndex(PodEventInformer.POD_NAME_INDEX, "agent")).thenReturn(Arrays.asList(
+                event("uid-0", "Killing", "2020-01-01T00:00:00Z"),
+                event("uid-1", "Started", "2020-01-01T00:00:02Z"),
+                event("uid-1", "Scheduled", "2020-01-01T00:00:01Z")));
+        Watch subscription = PodEventInformer.subscribe(cloud, client, "ns", "agent", new Watcher<Event>() {
+            @Override
+            public void eventReceived(Action action, Event resource) {
+            }
+
+            @Override
+            public void onClose(KubernetesClientException cause) {
+            }
+        });
+        try {
+            List<Event> events = computer.getPodEvents();
+            assertEquals("events of a previous pod with the same name are left out", 2, events.size());
+            assertEquals("Scheduled", events.get(0).getReason());
+            assertEquals("Started", events.get(1).getReason());
+            verify(informer).addIndexers(any(Map.class));
+            verify(podEvents, never()).list();
+        } finally {
+            subscription.close();
+        }
+    }
+
+    private static Event event(String podUid, String reason, String lastTimestamp) {
+        return new EventBuilder()
+                .withNewMetadata().withName("agent." + reason).endMetadata()
+                .withNewInvolvedObject().withKind("Pod").withName("agent").withNamespace("ns").withUid(podUid).endInvolvedObject()
+                .withReason(reason)
+                .withLastTimestamp(lastTimestamp)
+                .build();
+    }
+}
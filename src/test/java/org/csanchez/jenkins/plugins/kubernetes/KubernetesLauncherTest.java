@@ -0,0 +1,188 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.csanchez.jenkins.plugins.kubernetes.volumes.workspace.WorkspaceVolume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.model.TaskListener;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.dsl.base.OperationContext;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.SharedInformerFactory;
+
+@SuppressWarnings("unchecked")
+public class KubernetesLauncherTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private KubernetesClient client;
+    private KubernetesCloud cloud;
+    private PodTemplate template;
+    private KubernetesSlave node;
+    private KubernetesComputer computer;
+
+    @Before
+    public void setUp() throws Exception {
+        client = mock(KubernetesClient.class, RETURNS_DEEP_STUBS);
+        cloud = new KubernetesCloud("launcherTest") {
+            @Override
+            public KubernetesClient connect() {
+                return client;
+            }
+        };
+        template = mock(PodTemplate.class);
+        when(template.getName()).thenReturn("test");
+        when(template.getListener()).thenReturn(TaskListener.NULL);
+        when(template.getSlaveConnectTimeout()).thenReturn(10);
+        when(template.getWorkspaceVolume()).thenReturn(mock(WorkspaceVolume.class));
+
+        node = mock(KubernetesSlave.class);
+        when(node.getNodeName()).thenReturn("agent-1");
+        when(node.getCloudName()).thenReturn(cloud.name);
+        when(node.getKubernetesCloud()).thenReturn(cloud);
+        when(node.getTemplate()).thenReturn(template);
+        when(template.build(node)).thenReturn(pod(false));
+
+        // isOnline() is final in some versions of core, and delegates to isOffline()
+        computer = mock(KubernetesComputer.class, withSettings().defaultAnswer(invocation -> {
+            switch (invocation.getMethod().getName()) {
+                case "isOnline":
+                    return true;
+                case "isOffline":
+                    return false;
+                default:
+                    return RETURNS_DEFAULTS.answer(invocation);
+            }
+        }));
+        when(computer.getNode()).thenReturn(node);
+        when(computer.getName()).thenReturn("agent-1");
+        when(node.getComputer()).thenReturn(computer);
+    }
+
+    @Test
+    public void launchReturnsBeforePodIsCreated() throws Exception {
+        CountDownLatch creating = new CountDownLatch(1);
+        when(client.pods().inNamespace("jenkins").create(any(Pod.class))).thenAnswer(invocation -> {
+            creating.await(10, TimeUnit.SECONDS);
+            return pod(true);
+        });
+        KubernetesLauncher launcher = new KubernetesLauncher();
+
+        launcher.launch(computer, TaskListener.NULL);
+        assertFalse("the launch is in progress", launcher.isLaunched());
+        assertFalse("launching agents are not launched again", launcher.isLaunchSupported());
+
+        creating.countDown();
+        verify(computer, timeout(10000)).setAcceptingTasks(true);
+        verify(node, timeout(10000)).save();
+        assertTrue(launcher.isLaunched());
+    }
+
+    @Test
+    public void launchCompletesOnceConnected() throws Exception {
+        when(client.pods().inNamespace("jenkins").create(any(Pod.class))).thenReturn(pod(true));
+        KubernetesLauncher launcher = new KubernetesLauncher();
+
+        launcher.launchAsync(computer, TaskListener.NULL).get(10, TimeUnit.SECONDS);
+
+        verify(computer).setAcceptingTasks(true);
+        verify(node).save();
+        verify(node, never()).terminate();
+        assertFalse("launched agents are not launched again", launcher.isLaunchSupported());
+    }
+
+    @Test
+    public void launchFailsWhenPodCannotBeCreated() throws Exception {
+        when(client.pods().inNamespace("jenkins").create(any(Pod.class)))
+                .thenThrow(new KubernetesClientException("pods \"agent-1\" is invalid", 422, null));
+        KubernetesLauncher launcher = new KubernetesLauncher();
+
+        try {
+            launcher.launchAsync(computer, TaskListener.NULL).get(10, TimeUnit.SECONDS);
+            fail("the launch should have failed");
+        } catch (ExecutionException e) {
+            assertEquals(422, ((KubernetesClientException) e.getCause()).getCode());
+        }
+
+        verify(node, timeout(10000)).terminate();
+        verify(computer, never()).setAcceptingTasks(true);
+        assertNotNull(launcher.getProblem());
+    }
+
+    @Test
+    public void reservationIsReleasedForTemplateNamespaceNotWatchedByPodCache() throws Exception {
+        KubernetesCloud cloud = new KubernetesCloud("launcherCacheTest") {
+            @Override
+            public KubernetesClient connect() {
+                return client;
+            }
+        };
+        cloud.setNamespace("cached");
+        when(node.getCloudName()).thenReturn(cloud.name);
+        when(node.getKubernetesCloud()).thenReturn(cloud);
+        SharedInformerFactory factory = mock(SharedInformerFactory.class);
+        SharedIndexInformer<Pod> informer = mock(SharedIndexInformer.class);
+        when(client.informers()).thenReturn(factory);
+        when(factory.sharedIndexInformerFor(eq(Pod.class), eq(PodList.class), any(OperationContext.class), anyLong()))
+                .thenReturn(informer);
+        when(informer.hasSynced()).thenReturn(true);
+        PodCache.get(cloud);
+        assertTrue(PodCache.isSynced(cloud, "cached"));
+        assertFalse(PodCache.isSynced(cloud, "jenkins"));
+
+        when(template.getNamespace()).thenReturn("jenkins");
+        when(template.build(node)).thenReturn(new PodBuilder(pod(false)).editMetadata().withNamespace(null).endMetadata().build());
+        when(template.getLabelsMap()).thenReturn(Collections.singletonMap("jenkins/label-digest", "test"));
+        CapacityLedger ledger = CapacityLedger.get(cloud);
+        assertTrue(ledger.reserve("agent-1", template, 10, 10));
+        when(client.pods().inNamespace("jenkins").create(any(Pod.class))).thenReturn(pod(true));
+
+        new KubernetesLauncher().launchAsync(computer, TaskListener.NULL).get(10, TimeUnit.SECONDS);
+
+        assertEquals("the pod cache never sees the pod to release its slot", 0, ledger.getReserved());
+    }
+
+    private static Pod pod(boolean running) {
+        PodBuilder builder = new PodBuilder()
+                .withNewMetadata().withName("agent-1").withNamespace("jenkins").endMetadata()
+                .withNewSpec().addNewContainer().withName("jnlp").endContainer().endSpec();
+        if (running) {
+            builder.withNewStatus()
+                    .withPhase("Running")
+                    .addNewContainerStatus().withName("jnlp").withReady(true)
+                    .withNewState().withNewRunning().endRunning().endState()
+                    .endContainerStatus()
+                    .endStatus();
+        }
+        return builder.build();
+    }
+}
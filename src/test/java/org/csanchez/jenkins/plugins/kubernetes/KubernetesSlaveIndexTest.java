@@ -0,0 +1,78 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.slaves.JNLPLauncher;
+import hudson.slaves.RetentionStrategy;
+
+public class KubernetesSlaveIndexTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private KubernetesCloud cloud;
+    private PodTemplate template;
+
+    @Before
+    public void setUp() {
+        cloud = new KubernetesCloud("indexTest");
+        j.jenkins.clouds.add(cloud);
+        template = new PodTemplate();
+        template.setName("test");
+        cloud.addTemplate(template);
+    }
+
+    @Test
+    public void indexesAgentsByPodAndCloud() throws Exception {
+        KubernetesSlave agent = agent("agent-1", "ns");
+
+        assertSame(agent, KubernetesSlaveIndex.get("ns", agent.getPodName()).get());
+        assertFalse(KubernetesSlaveIndex.get("other", agent.getPodName()).isPresent());
+        assertEquals(Collections.singletonList(agent), KubernetesSlaveIndex.getNodes(cloud.name));
+        assertTrue(KubernetesSlaveIndex.getNodes("unknown").isEmpty());
+
+        j.jenkins.removeNode(agent);
+        assertFalse(KubernetesSlaveIndex.get("ns", agent.getPodName()).isPresent());
+        assertTrue(KubernetesSlaveIndex.getNodes(cloud.name).isEmpty());
+    }
+
+    @Test
+    public void namespaceChangeIsIndexed() throws Exception {
+        KubernetesSlave agent = agent("agent-2", "ns");
+        agent.setNamespace("other");
+
+        assertFalse(KubernetesSlaveIndex.get("ns", agent.getPodName()).isPresent());
+        assertSame(agent, KubernetesSlaveIndex.get("other", agent.getPodName()).get());
+    }
+
+    @Test
+    public void rebuildFindsExistingAgents() throws Exception {
+        KubernetesSlave agent = agent("agent-3", "ns");
+        KubernetesSlaveIndex.rebuild(j.jenkins);
+        assertSame(agent, KubernetesSlaveIndex.get("ns", agent.getPodName()).get());
+        assertEquals(1, KubernetesSlaveIndex.getNodes().size());
+    }
+
+    private KubernetesSlave agent(String name, String namespace) throws Exception {
+        KubernetesSlave agent = KubernetesSlave.builder()
+                .name(name)
+                .podTemplate(template)
+                .cloud(cloud)
+                .computerLauncher(new JNLPLauncher(false))
+                .retentionStrategy(RetentionStrategy.NOOP)
+                .build();
+        agent.setNamespace(namespace);
+        j.jenkins.addNode(agent);
+        return agent;
+    }
+}
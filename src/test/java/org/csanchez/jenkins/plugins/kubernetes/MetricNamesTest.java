@@ -47,4 +47,12 @@ public class MetricNamesTest {
 
         Assert.assertEquals(expected, actual);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void metricNameForLaunchPhaseAddsCloudAndTemplate() {
+        Assert.assertEquals("kubernetes.cloud.kubernetes.launch.schedule",
+                MetricNames.metricNameForLaunchPhase("kubernetes", "schedule"));
+        Assert.assertEquals("kubernetes.cloud.kubernetes.maven.launch.pull",
+                MetricNames.metricNameForLaunchPhase("kubernetes", "maven", "pull"));
+    }
+}
@@ -0,0 +1,272 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.model.TaskListener;
+import hudson.slaves.JNLPLauncher;
+import hudson.slaves.RetentionStrategy;
+import io.fabric8.kubernetes.api.model.OwnerReferenceBuilder;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaimBuilder;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaimListBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.PodListBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import io.fabric8.kubernetes.client.dsl.PodResource;
+import io.fabric8.kubernetes.client.dsl.Resource;
+
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class OrphanedPodCollectorTest {
+
+    private static final String JENKINS_URL = "http://jenkins.example.com/";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private KubernetesClient client;
+    private FilterWatchListDeletable pods;
+    private FilterWatchListDeletable claims;
+    private KubernetesCloud cloud;
+    private final Map<String, PodResource> podResources = new HashMap<>();
+    private final Map<String, Resource> claimResources = new HashMap<>();
+
+    private long gracePeriod;
+    private int maxDeletions;
+    private boolean dryRun;
+
+    @Before
+    public void setUp() {
+        gracePeriod = OrphanedPodCollector.GRACE_PERIOD;
+        maxDeletions = OrphanedPodCollector.MAX_DELETIONS;
+        dryRun = OrphanedPodCollector.DRY_RUN;
+        OrphanedPodCollector.GRACE_PERIOD = 0;
+
+        client = mock(KubernetesClient.class, RETURNS_DEEP_STUBS);
+        pods = mock(FilterWatchListDeletable.class);
+        claims = mock(FilterWatchListDeletable.class);
+        when(client.pods().inNamespace("ns").withLabels(anyMap())).thenReturn(pods);
+        when(client.persistentVolumeClaims().inNamespace("ns").withLabels(anyMap())).thenReturn(claims);
+        when(claims.list(anyInt(), nullable(String.class))).thenReturn(new PersistentVolumeClaimListBuilder().build());
+        cloud = new KubernetesCloud("orphans") {
+            @Override
+            public KubernetesClient connect() {
+                return client;
+            }
+        };
+        cloud.setNamespace("ns");
+        cloud.setJenkinsUrl(JENKINS_URL);
+        j.jenkins.clouds.add(cloud);
+    }
+
+    @After
+    public void tearDown() {
+        OrphanedPodCollector.GRACE_PERIOD = gracePeriod;
+        OrphanedPodCollector.MAX_DELETIONS = maxDeletions;
+        OrphanedPodCollector.DRY_RUN = dryRun;
+    }
+
+    @Test
+    public void orphanedPodIsDeletedAfterGracePeriod() throws Exception {
+        OrphanedPodCollector.GRACE_PERIOD = TimeUnit.SECONDS.toMillis(1);
+        listPods(null, null, pod("orphan", JENKINS_URL));
+        OrphanedPodCollector collector = new OrphanedPodCollector();
+
+        collector.execution(TaskListener.NULL);
+        verify(podResource("orphan"), never()).delete();
+
+        Thread.sleep(1100);
+        collector.execution(TaskListener.NULL);
+        verify(podResource("orphan")).delete();
+    }
+
+    @Test
+    public void onlyOrphanedPodsOfThisInstanceAreDeleted() throws Exception {
+        KubernetesSlave agent = KubernetesSlave.builder()
+                .name("agent")
+                .podTemplate(new PodTemplate())
+                .cloud(cloud)
+                .computerLauncher(new JNLPLauncher(false))
+                .retentionStrategy(RetentionStrategy.NOOP)
+                .build();
+        agent.setNamespace("ns");
+        j.jenkins.addNode(agent);
+        listPods(null, null,
+                pod("orphan", JENKINS_URL),
+                pod("agent", JENKINS_URL),
+                pod("other-instance", "http://other.example.com/"),
+                pod("unknown", null));
+
+        new OrphanedPodCollector().execution(TaskListener.NULL);
+
+        verify(podResource("orphan")).delete();
+        verify(podResource("agent"), never()).delete();
+        verify(podResource("other-instance"), never()).delete();
+        verify(podResource("unknown"), never()).delete();
+    }
+
+    @Test
+    public void podsOfUnknownOriginAreKeptWithoutJenkinsUrl() throws Exception {
+        cloud.setDirectConnection(true);
+        listPods(null, null, pod("orphan", JENKINS_URL));
+
+        new OrphanedPodCollector().execution(TaskListener.NULL);
+
+        verify(podResource("orphan"), never()).delete();
+    }
+
+    @Test
+    public void dryRunDeletesNothing() throws Exception {
+        OrphanedPodCollector.DRY_RUN = true;
+        listPods(null, null, pod("orphan", JENKINS_URL));
+        listClaims(claim("pvc-gone", false));
+
+        new OrphanedPodCollector().execution(TaskListener.NULL);
+
+        verify(podResource("orphan"), never()).delete();
+        verify(claimResource("pvc-gone"), never()).delete();
+    }
+
+    @Test
+    public void deletionsAreCappedPerRun() throws Exception {
+        OrphanedPodCollector.MAX_DELETIONS = 2;
+        listPods(null, null, pod("a", JENKINS_URL), pod("b", JENKINS_URL), pod("c", JENKINS_URL));
+        OrphanedPodCollector collector = new OrphanedPodCollector();
+
+        collector.execution(TaskListener.NULL);
+        verify(podResource("a")).delete();
+        verify(podResource("b")).delete();
+        verify(podResource("c"), never()).delete();
+
+        listPods(null, null, pod("c", JENKINS_URL));
+        collector.execution(TaskListener.NULL);
+        verify(podResource("c")).delete();
+    }
+
+    @Test
+    public void listingContinuesWhereThePreviousRunStopped() throws Exception {
+        listPods(null, "next", pod("a", JENKINS_URL));
+        listPods("next", null, pod("b", JENKINS_URL));
+        OrphanedPodCollector collector = new OrphanedPodCollector();
+
+        collector.execution(TaskListener.NULL);
+        verify(podResource("a")).delete();
+        verify(podResource("b"), never()).delete();
+
+        collector.execution(TaskListener.NULL);
+        verify(podResource("b")).delete();
+
+        // last page, the next run starts over
+        collector.execution(TaskListener.NULL);
+        verify(pods, times(2)).list(anyInt(), (String) isNull());
+        verify(pods, times(1)).list(anyInt(), eq("next"));
+    }
+
+    @Test
+    public void onlyClaimsWithoutOwnerWhosePodIsGoneAreDeleted() throws Exception {
+        listPods(null, null);
+        Pod alive = pod("alive", JENKINS_URL);
+        when(podResource("alive").get()).thenReturn(alive);
+        PodResource owner = podResource("owned");
+        listClaims(claim("pvc-owned", true), claim("pvc-alive", false), claim("pvc-gone", false));
+
+        new OrphanedPodCollector().execution(TaskListener.NULL);
+
+        verify(claimResource("pvc-gone")).delete();
+        verify(claimResource("pvc-alive"), never()).delete();
+        verify(claimResource("pvc-owned"), never()).delete();
+        verify(owner, never()).get();
+    }
+
+    private void listPods(String continueToken, String nextContinueToken, Pod... items) {
+        when(pods.list(anyInt(), continueToken == null ? (String) isNull() : eq(continueToken)))
+                .thenReturn(new PodListBuilder()
+                        .withNewMetadata().withContinue(nextContinueToken).endMetadata()
+                        .withItems(items)
+                        .build());
+    }
+
+    private void listClaims(PersistentVolumeClaim... items) {
+        when(claims.list(anyInt(), nullable(String.class)))
+                .thenReturn(new PersistentVolumeClaimListBuilder().withItems(items).build());
+    }
+
+    private PodResource podResource(String name) {
+        return podResources.computeIfAbsent(name, k -> {
+            PodResource resource = mock(PodResource.class);
+            when(resource.delete()).thenReturn(true);
+            when(client.pods().inNamespace("ns").withName(k)).thenReturn(resource);
+            return resource;
+        });
+    }
+
+    private Resource claimResource(String name) {
+        return claimResources.computeIfAbsent(name, k -> {
+            Resource resource = mock(Resource.class);
+            when(resource.delete()).thenReturn(true);
+            when(client.persistentVolumeClaims().inNamespace("ns").withName(k)).thenReturn(resource);
+            return resource;
+        });
+    }
+
+    private Pod pod(String name, String jenkinsUrl) {
+        podResource(name);
+        PodBuilder builder = new PodBuilder()
+                .withNewMetadata()
+                .withName(name).withNamespace("ns").withUid("uid-" + name)
+                .withLabels(cloud.getPodLabelsMap())
+                .withCreationTimestamp(Instant.now().minus(1, ChronoUnit.HOURS).toString())
+                .endMetadata()
+                .withNewStatus().withPhase("Running").endStatus();
+        if (jenkinsUrl == null) {
+            builder.withNewSpec().addNewContainer().withName("jnlp").endContainer().endSpec();
+        } else {
+            builder.withNewSpec().addNewContainer().withName("jnlp")
+                    .addNewEnv().withName("JENKINS_URL").withValue(jenkinsUrl).endEnv()
+                    .endContainer().endSpec();
+        }
+        return builder.build();
+    }
+
+    private PersistentVolumeClaim claim(String name, boolean owned) {
+        claimResource(name);
+        // pods not stubbed otherwise are gone
+        podResource(name.substring("pvc-".length()));
+        PersistentVolumeClaimBuilder builder = new PersistentVolumeClaimBuilder()
+                .withNewMetadata()
+                .withName(name).withNamespace("ns").withUid("uid-" + name)
+                .withCreationTimestamp(Instant.now().minus(1, ChronoUnit.HOURS).toString())
+                .endMetadata();
+        if (owned) {
+            builder.editMetadata()
+                    .withOwnerReferences(Collections.singletonList(new OwnerReferenceBuilder()
+                            .withKind("Pod").withName(name.substring("pvc-".length())).withUid("uid").build()))
+                    .endMetadata();
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,92 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+
+public class PodCacheTest {
+
+    @Test
+    public void indexesActivePods() {
+        PodCache cache = new PodCache("kubernetes", 0);
+        assertFalse(cache.hasSynced());
+        PodTemplate java = template("java");
+        PodTemplate go = template("go");
+
+        Pod running = pod("running", "Running", java);
+        Pod pending = pod("pending", "Pending", go);
+        cache.onAdd(running);
+        cache.onAdd(pending);
+        cache.onAdd(pod("succeeded", "Succeeded", java));
+        assertEquals(2, cache.getIndex().count());
+        assertEquals(1, cache.getIndex().count(java));
+        assertEquals(1, cache.getIndex().count(go));
+
+        cache.onUpdate(pending, pod("pending", "Failed", go));
+        assertEquals(1, cache.getIndex().count());
+        assertEquals(0, cache.getIndex().count(go));
+
+        cache.onDelete(running, false);
+        assertEquals(0, cache.getIndex().count());
+        assertEquals(0, cache.getIndex().count(java));
+    }
+
+    @Test
+    public void podWithoutStatusIsNotActive() {
+        PodCache cache = new PodCache("kubernetes", 0);
+        cache.onAdd(new PodBuilder().withNewMetadata().withName("new").endMetadata().build());
+        assertEquals(0, cache.getIndex().count());
+    }
+
+    @Test
+    public void observedPodReleasesReservation() {
+        PodCache cache = new PodCache("podCacheTest", 0);
+        PodTemplate java = template("java");
+        CapacityLedger ledger = CapacityLedger.get("podCacheTest");
+        ledger.reserve("agent", java, 1, 1);
+        cache.onAdd(pod("agent", "Pending", java));
+        assertEquals(0, ledger.getReserved());
+        assertEquals(1, cache.getIndex().count(java));
+    }
+
+    @Test
+    public void failedStartIsNotRetriedImmediately() {
+        PodCache cache = new PodCache("kubernetes", 0);
+        KubernetesCloud cloud = mock(KubernetesCloud.class);
+        when(cloud.getNamespace()).thenReturn("jenkins");
+        when(cloud.getPodLabelsMap()).thenReturn(Collections.singletonMap("jenkins", "slave"));
+        KubernetesClient client = mock(KubernetesClient.class);
+        when(client.informers()).thenThrow(new KubernetesClientException("forbidden"));
+
+        cache.start(cloud, client);
+        cache.start(cloud, client);
+        cache.start(cloud, client);
+        verify(client, times(1)).informers();
+        assertFalse(cache.hasSynced());
+    }
+
+    private static PodTemplate template(String label) {
+        PodTemplate template = new PodTemplate();
+        template.setLabel(label);
+        return template;
+    }
+
+    private static Pod pod(String name, String phase, PodTemplate template) {
+        return new PodBuilder()
+                .withNewMetadata().withName(name).withLabels(template.getLabelsMap()).endMetadata()
+                .withNewStatus().withPhase(phase).endStatus()
+                .build();
+    }
+}
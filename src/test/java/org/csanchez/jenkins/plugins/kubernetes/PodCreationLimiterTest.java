@@ -0,0 +1,60 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class PodCreationLimiterTest {
+
+    @Test
+    public void burstThenFairAcrossTemplates() {
+        AtomicLong clock = new AtomicLong();
+        PodCreationLimiter limiter = new PodCreationLimiter(10, 2, clock::get);
+
+        assertTrue(limiter.acquire("java").isDone());
+        assertTrue(limiter.acquire("java").isDone());
+        CompletableFuture<Void> java3 = limiter.acquire("java");
+        CompletableFuture<Void> java4 = limiter.acquire("java");
+        CompletableFuture<Void> go1 = limiter.acquire("go");
+        assertFalse(java3.isDone());
+        assertEquals(3, limiter.getQueued());
+
+        clock.addAndGet(100);
+        limiter.drain();
+        assertTrue(java3.isDone());
+        assertFalse(java4.isDone());
+        assertFalse(go1.isDone());
+
+        clock.addAndGet(100);
+        limiter.drain();
+        assertTrue("templates are served in turn", go1.isDone());
+        assertFalse(java4.isDone());
+
+        clock.addAndGet(100);
+        limiter.drain();
+        assertTrue(java4.isDone());
+        assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    public void disabledWithoutQps() {
+        PodCreationLimiter limiter = new PodCreationLimiter(0, 1, () -> 0L);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.acquire("java").isDone());
+        }
+    }
+
+    @Test
+    public void retryDelayIsJitteredAndGrows() {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            long base = 1000L << attempt;
+            long delay = KubernetesLauncher.retryDelay(attempt);
+            assertTrue(delay >= base / 2 && delay <= base);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.fabric8.kubernetes.api.model.Event;
+import io.fabric8.kubernetes.api.model.EventBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+
+public class PodEventInformerTest {
+
+    @Test
+    public void dispatchesEventsByInvolvedPod() {
+        PodEventInformer informer = new PodEventInformer("kubernetes", "default", 0);
+        RecordingWatcher first = new RecordingWatcher();
+        RecordingWatcher second = new RecordingWatcher();
+        Watch firstSubscription = informer.register("pod-1", first);
+        informer.register("pod-2", second);
+
+        Event scheduled = event("pod-1", "Scheduled", "1");
+        informer.onAdd(scheduled);
+        informer.onAdd(event("pod-2", "Pulling", "2"));
+        informer.onAdd(event("other", "Pulling", "3"));
+        assertEquals(1, first.reasons.size());
+        assertEquals("Scheduled", first.reasons.get(0));
+        assertEquals(1, second.reasons.size());
+
+        // resync
+        informer.onUpdate(scheduled, scheduled);
+        assertEquals(1, first.reasons.size());
+        informer.onUpdate(scheduled, event("pod-1", "Scheduled", "4"));
+        assertEquals(2, first.reasons.size());
+
+        firstSubscription.close();
+        assertEquals(1, first.closed);
+        informer.onAdd(event("pod-1", "Pulled", "5"));
+        assertEquals(2, first.reasons.size());
+    }
+
+    @Test
+    public void failedStartIsNotRetriedImmediately() {
+        PodEventInformer informer = new PodEventInformer("kubernetes", "jenkins", 0);
+        KubernetesClient client = mock(KubernetesClient.class);
+        when(client.informers()).thenThrow(new KubernetesClientException("forbidden"));
+
+        assertFalse(informer.start(client));
+        assertFalse(informer.start(client));
+        assertFalse(informer.start(client));
+        verify(client, times(1)).informers();
+    }
+
+    @Test
+    public void eventsAreIndexedByInvolvedPod() {
+        assertEquals(Collections.singletonList("pod-1"), PodEventInformer.podNameIndex(event("pod-1", "Scheduled", "1")));
+        assertEquals(Collections.emptyList(), PodEventInformer.podNameIndex(new EventBuilder().withReason("Unknown").build()));
+    }
+
+    private static Event event(String podName, String reason, String resourceVersion) {
+        return new EventBuilder()
+                .withNewMetadata().withName(podName + "." + resourceVersion).withResourceVersion(resourceVersion).endMetadata()
+                .withNewInvolvedObject().withKind("Pod").withName(podName).withNamespace("default").endInvolvedObject()
+                .withReason(reason)
+                .withMessage(reason)
+                .build();
+    }
+
+    private static class RecordingWatcher implements Watcher<Event> {
+        private final List<String> reasons = new ArrayList<>();
+        private int closed;
+
+        @Override
+        public void eventReceived(Action action, Event event) {
+            reasons.add(event.getReason());
+        }
+
+        @Override
+        public void onClose(KubernetesClientException cause) {
+            closed++;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.fabric8.kubernetes.api.model.ContainerStatus;
+import io.fabric8.kubernetes.api.model.ContainerStatusBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.PodConditionBuilder;
+
+public class PodLaunchTimingsTest {
+
+    @Test
+    public void measuresPhasesFromPodStatus() {
+        Pod pod = new PodBuilder()
+                .withNewMetadata().withName("agent").withCreationTimestamp("2020-11-02T10:00:00Z").endMetadata()
+                .withNewStatus()
+                .withConditions(
+                        new PodConditionBuilder().withType("PodScheduled").withStatus("True").withLastTransitionTime("2020-11-02T10:00:02Z").build(),
+                        new PodConditionBuilder().withType("ContainersReady").withStatus("True").withLastTransitionTime("2020-11-02T10:00:50Z").build())
+                .withContainerStatuses(
+                        running("jnlp", "2020-11-02T10:00:40Z"),
+                        running("maven", "2020-11-02T10:00:45Z"))
+                .endStatus()
+                .build();
+        PodLaunchTimings timings = new PodLaunchTimings("agent", "maven");
+        timings.measure(pod);
+        timings.set(PodLaunchTimings.Phase.CONNECT, 3000);
+
+        assertNull(timings.get(PodLaunchTimings.Phase.PROVISION));
+        assertEquals(Long.valueOf(2000), timings.get(PodLaunchTimings.Phase.SCHEDULE));
+        assertEquals(Long.valueOf(43000), timings.get(PodLaunchTimings.Phase.PULL));
+        assertEquals(Long.valueOf(5000), timings.get(PodLaunchTimings.Phase.START));
+        assertEquals(53000, timings.getTotal());
+        assertEquals("-", timings.getDurationString(PodLaunchTimings.Phase.PROVISION));
+    }
+
+    @Test
+    public void ignoresMissingTimestamps() {
+        Pod pod = new PodBuilder().withNewMetadata().withName("agent").endMetadata().withNewStatus().endStatus().build();
+        PodLaunchTimings timings = new PodLaunchTimings("agent", null);
+        timings.measure(pod);
+        assertEquals(0, timings.getTotal());
+        assertNull(timings.get(PodLaunchTimings.Phase.SCHEDULE));
+    }
+
+    @Test
+    public void unwrappedTemplatesAreStatic() {
+        KubernetesCloud cloud = new KubernetesCloud("kubernetes");
+        PodTemplate parent = new PodTemplate();
+        parent.setName("parent");
+        PodTemplate maven = new PodTemplate();
+        maven.setName("maven");
+        maven.setInheritFrom("parent");
+        cloud.addTemplate(parent);
+        cloud.addTemplate(maven);
+
+        PodTemplate unwrapped = PodTemplateUtils.unwrap(maven, cloud.getTemplates());
+        assertTrue(PodLaunchTimings.isStaticTemplate(cloud, unwrapped));
+        assertFalse(PodLaunchTimings.isStaticTemplate(cloud, new PodTemplate()));
+    }
+
+    private static ContainerStatus running(String name, String startedAt) {
+        return new ContainerStatusBuilder().withName(name).withReady(true)
+                .withNewState().withNewRunning().withStartedAt(startedAt).endRunning().endState()
+                .build();
+    }
+}
@@ -10,9 +10,12 @@ import org.jvnet.hudson.test.TestExtension;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 
 public class PodTemplateFilterTest {
@@ -48,6 +51,20 @@ public class PodTemplateFilterTest {
         assertThat(result.get(0).getYamls(), Matchers.containsInAnyOrder("yaml1", "yaml2"));
     }
 
+    @Test
+    public void resolutionIsNotMemoizedWithExternalFilters() {
+        assertFalse(PodTemplateResolutionCache.hasOnlyBuiltInExtensions());
+        PodTemplateResolutionCache cache = new PodTemplateResolutionCache();
+        AtomicInteger resolutions = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            cache.getTemplatesFor(Label.get("label"), l -> {
+                resolutions.incrementAndGet();
+                return Collections.emptyList();
+            });
+        }
+        assertEquals(2, resolutions.get());
+    }
+
     private static PodTemplate addYaml(@Nonnull PodTemplate podTemplate, String yaml) {
         PodTemplate result = new PodTemplate(podTemplate);
         List<String> yamls = new ArrayList<>(result.getYamls());
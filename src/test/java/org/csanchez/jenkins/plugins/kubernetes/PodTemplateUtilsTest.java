@@ -121,6 +121,26 @@ public class PodTemplateUtilsTest {
         assertEquals("sa", result.getServiceAccount());
     }
 
+    @Test
+    public void shouldOverrideWarmPoolSizeIfSpecified() {
+        PodTemplate parent = new PodTemplate();
+        parent.setName("parent");
+        parent.setWarmPoolSize(2);
+
+        PodTemplate template1 = new PodTemplate();
+        template1.setName("template1");
+        template1.setWarmPoolSize(5);
+
+        PodTemplate template2 = new PodTemplate();
+        template2.setName("template2");
+
+        PodTemplate result = combine(parent, template1);
+        assertEquals(5, result.getWarmPoolSize());
+
+        result = combine(parent, template2);
+        assertEquals(2, result.getWarmPoolSize());
+    }
+
     @Test
     public void shouldOverrideNodeSelectorIfSpecified() {
         PodTemplate parent = new PodTemplate();
@@ -240,6 +260,7 @@ public class PodTemplateUtilsTest {
         podTemplate.setSlaveConnectTimeout(99);
         podTemplate.setIdleMinutes(99);
         podTemplate.setActiveDeadlineSeconds(99);
+        podTemplate.setWarmPoolSize(99);
         podTemplate.setServiceAccount("ServiceAccount");
         podTemplate.setYaml("Yaml");
 
@@ -257,6 +278,7 @@ public class PodTemplateUtilsTest {
         assertEquals(99, selfCombined.getSlaveConnectTimeout());
         assertEquals(99, selfCombined.getIdleMinutes());
         assertEquals(99, selfCombined.getActiveDeadlineSeconds());
+        assertEquals(99, selfCombined.getWarmPoolSize());
         assertEquals("ServiceAccount", selfCombined.getServiceAccount());
         assertThat(selfCombined.getYamls(), hasItems("Yaml", "Yaml"));
     }
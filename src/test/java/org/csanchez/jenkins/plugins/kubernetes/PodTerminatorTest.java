@@ -0,0 +1,104 @@
+package org.csanchez.jenkins.plugins.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.model.TaskListener;
+import hudson.slaves.JNLPLauncher;
+import hudson.slaves.RetentionStrategy;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.dsl.PodResource;
+
+public class PodTerminatorTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private KubernetesSlave agent;
+    private KubernetesClient client;
+
+    @Before
+    public void setUp() {
+        agent = mock(KubernetesSlave.class);
+        when(agent.getNodeName()).thenReturn("agent-1");
+        client = mock(KubernetesClient.class);
+    }
+
+    @Test
+    public void podIsDeletedInTheBackground() throws Exception {
+        CountDownLatch deleting = new CountDownLatch(1);
+        CountDownLatch deleted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            deleting.countDown();
+            deleted.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(agent).deleteSlavePod(TaskListener.NULL, client);
+
+        CompletableFuture<Void> terminated = PodTerminator.terminate(agent, client, true, TaskListener.NULL);
+
+        deleting.await(10, TimeUnit.SECONDS);
+        assertFalse("the pod is being deleted", terminated.isDone());
+        assertEquals(1, PodTerminator.getPending());
+        deleted.countDown();
+        terminated.get(10, TimeUnit.SECONDS);
+        assertEquals(0, PodTerminator.getPending());
+    }
+
+    @Test
+    public void podIsKeptByRetentionPolicy() throws Exception {
+        PodTerminator.terminate(agent, client, false, TaskListener.NULL).get(10, TimeUnit.SECONDS);
+
+        verify(agent, never()).deleteSlavePod(TaskListener.NULL, client);
+    }
+
+    @Test
+    public void nodeIsRemovedBeforePodIsDeleted() throws Exception {
+        KubernetesClient client = mock(KubernetesClient.class, RETURNS_DEEP_STUBS);
+        PodResource podResource = mock(PodResource.class, RETURNS_DEEP_STUBS);
+        when(client.pods().inNamespace("ns").withName("agent")).thenReturn(podResource);
+        CountDownLatch deleted = new CountDownLatch(1);
+        when(podResource.cascading(true).delete()).thenAnswer(invocation -> {
+            deleted.await(10, TimeUnit.SECONDS);
+            return true;
+        });
+        KubernetesCloud cloud = new KubernetesCloud("terminatorTest") {
+            @Override
+            public KubernetesClient connect() {
+                return client;
+            }
+        };
+        j.jenkins.clouds.add(cloud);
+        KubernetesSlave agent = KubernetesSlave.builder()
+                .name("agent")
+                .podTemplate(new PodTemplate())
+                .cloud(cloud)
+                .computerLauncher(new JNLPLauncher(false))
+                .retentionStrategy(RetentionStrategy.NOOP)
+                .build();
+        agent.setNamespace("ns");
+        j.jenkins.addNode(agent);
+
+        agent.terminate();
+
+        assertNull("the node is removed once terminate() returns", j.jenkins.getNode("agent"));
+        deleted.countDown();
+        verify(podResource.cascading(true), timeout(10000)).delete();
+    }
+}
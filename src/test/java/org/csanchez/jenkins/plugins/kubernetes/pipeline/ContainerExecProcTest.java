@@ -0,0 +1,80 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import hudson.AbortException;
+import hudson.util.StreamTaskListener;
+import io.fabric8.kubernetes.client.dsl.ExecWatch;
+
+public class ContainerExecProcTest {
+
+    private static final String MISSING_SHELL = "{\"metadata\":{},\"status\":\"Failure\","
+            + "\"message\":\"OCI runtime exec failed: exec failed: exec: \\\"bash\\\": executable file not found in $PATH: unknown\","
+            + "\"reason\":\"InternalError\","
+            + "\"details\":{\"causes\":[{\"message\":\"OCI runtime exec failed\"}]}}";
+
+    private static final String NON_ZERO_EXIT_CODE = "{\"metadata\":{},\"status\":\"Failure\","
+            + "\"message\":\"command terminated with non-zero exit code: Error executing in Docker Container: 127\","
+            + "\"reason\":\"NonZeroExitCode\","
+            + "\"details\":{\"causes\":[{\"reason\":\"ExitCode\",\"message\":\"127\"}]}}";
+
+    private static final String SUCCESS = "{\"metadata\":{},\"status\":\"Success\"}";
+
+    @Test
+    public void missingShellIsReportedWhenStreamCloses() throws IOException {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        assertTrue(ContainerExecProc.reportLaunchFailure(status(MISSING_SHELL), new StreamTaskListener(log)));
+        String output = log.toString(StandardCharsets.UTF_8.name());
+        assertThat(output, containsString("ERROR: Process exited immediately after creation"));
+        assertThat(output, containsString("executable file not found in $PATH"));
+    }
+
+    @Test
+    public void exitCodesAreNotLaunchFailures() throws IOException {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        assertFalse(ContainerExecProc.reportLaunchFailure(status(NON_ZERO_EXIT_CODE), new StreamTaskListener(log)));
+        assertFalse(ContainerExecProc.reportLaunchFailure(status(SUCCESS), new StreamTaskListener(log)));
+        assertFalse(ContainerExecProc.reportLaunchFailure(new ByteArrayOutputStream(), new StreamTaskListener(log)));
+        assertFalse(ContainerExecProc.reportLaunchFailure(status("not json"), new StreamTaskListener(log)));
+        assertEquals("", log.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @Test
+    public void joinFailsOnLaunchFailure() throws Exception {
+        assertEquals(127, proc(NON_ZERO_EXIT_CODE).join());
+        assertEquals(0, proc(SUCCESS).join());
+        try {
+            proc(MISSING_SHELL).join();
+            fail("the shell did not start");
+        } catch (AbortException e) {
+            assertThat(e.getMessage(), containsString("Process exited immediately after creation"));
+        }
+    }
+
+    private static ContainerExecProc proc(String status) throws IOException {
+        CountDownLatch finished = new CountDownLatch(1);
+        finished.countDown();
+        return new ContainerExecProc(mock(ExecWatch.class), new AtomicBoolean(false), finished,
+                new ByteArrayOutputStream(), status(status));
+    }
+
+    private static ByteArrayOutputStream status(String status) throws IOException {
+        ByteArrayOutputStream error = new ByteArrayOutputStream();
+        error.write(status.getBytes(StandardCharsets.UTF_8));
+        return error;
+    }
+}
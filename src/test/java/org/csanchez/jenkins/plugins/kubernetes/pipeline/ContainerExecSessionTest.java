@@ -0,0 +1,155 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlave;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import hudson.Proc;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.dsl.ExecListener;
+import io.fabric8.kubernetes.client.dsl.ExecWatch;
+import io.fabric8.kubernetes.client.dsl.Execable;
+
+public class ContainerExecSessionTest {
+
+    private static final String MARKER = "\u0002abc:";
+
+    private static final String KEY = "ns/pod/c/sh";
+
+    private KubernetesClient client;
+    private ExecWatch watch;
+    private ExecListener listener;
+    private final ByteArrayOutputStream stdin = new ByteArrayOutputStream();
+
+    @Test
+    public void outputIsFramedPerCommand() throws Exception {
+        ContainerExecSession.Demultiplexer demux = new ContainerExecSession.Demultiplexer(MARKER.getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        CompletableFuture<Integer> firstExit = demux.start(first);
+        write(demux, "hello\nworld" + MARKER + "0\n");
+        assertEquals("hello\nworld", first.toString("UTF-8"));
+        assertEquals(0, (int) firstExit.get());
+
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        CompletableFuture<Integer> secondExit = demux.start(second);
+        // marker split across writes
+        write(demux, "failed\n\u0002ab");
+        assertFalse(secondExit.isDone());
+        write(demux, "c:12");
+        write(demux, "7\n");
+        assertEquals("failed\n", second.toString("UTF-8"));
+        assertEquals(127, (int) secondExit.get());
+    }
+
+    @Test
+    public void partialMarkerIsForwarded() throws Exception {
+        ContainerExecSession.Demultiplexer demux = new ContainerExecSession.Demultiplexer(MARKER.getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletableFuture<Integer> exit = demux.start(out);
+        write(demux, "\u0002ab\u0002abd" + MARKER + "1\n");
+        assertEquals("\u0002ab\u0002abd", out.toString("UTF-8"));
+        assertEquals(1, (int) exit.get());
+    }
+
+    @Test
+    public void closingFailsRunningCommand() throws Exception {
+        ContainerExecSession.Demultiplexer demux = new ContainerExecSession.Demultiplexer(MARKER.getBytes(StandardCharsets.UTF_8));
+        CompletableFuture<Integer> exit = demux.start(new ByteArrayOutputStream());
+        demux.fail();
+        assertTrue(exit.isCompletedExceptionally());
+    }
+
+    @Test
+    public void idleSessionIsReused() throws Exception {
+        ContainerExecSession session = acquire();
+        run(session);
+        assertTrue(ContainerExecSession.idleSessions.containsKey(KEY));
+
+        assertSame(session, ContainerExecSession.acquire(client, "ns", "pod", "c", "sh", 10));
+        assertFalse("no idle session left", ContainerExecSession.idleSessions.containsKey(KEY));
+    }
+
+    @Test
+    public void closedSessionIsForgotten() throws Exception {
+        run(acquire());
+        listener.onClose(1000, "bye");
+        assertFalse(ContainerExecSession.idleSessions.containsKey(KEY));
+    }
+
+    @Test
+    public void idleSessionsOfRemovedAgentAreClosed() throws Exception {
+        run(acquire());
+        KubernetesSlave node = mock(KubernetesSlave.class);
+        when(node.getNamespace()).thenReturn("ns");
+        when(node.getPodName()).thenReturn("pod");
+
+        new ContainerExecSession.NodeListenerImpl().onDeleted(node);
+
+        assertFalse(ContainerExecSession.idleSessions.containsKey(KEY));
+        verify(watch).close();
+    }
+
+    @After
+    public void discardAll() {
+        ContainerExecSession.discardAll("ns", "pod");
+    }
+
+    @SuppressWarnings("unchecked")
+    private ContainerExecSession acquire() throws IOException {
+        client = mock(KubernetesClient.class, RETURNS_DEEP_STUBS);
+        watch = mock(ExecWatch.class);
+        when(watch.getInput()).thenReturn(stdin);
+        Execable<String, ExecWatch> execable = mock(Execable.class);
+        when(client.pods().inNamespace("ns").withName("pod").inContainer("c").redirectingInput()
+                .writingOutput(any(OutputStream.class)).writingError(any(OutputStream.class))
+                .usingListener(any(ExecListener.class))).thenAnswer(invocation -> {
+                    listener = invocation.getArgument(0);
+                    return execable;
+                });
+        when(execable.exec("sh")).thenAnswer(invocation -> {
+            listener.onOpen(null);
+            return watch;
+        });
+        return ContainerExecSession.acquire(client, "ns", "pod", "c", "sh", 10);
+    }
+
+    /**
+     * Runs a command in the session, answering with the marker the session expects.
+     */
+    private void run(ContainerExecSession session) throws Exception {
+        ArgumentCaptor<OutputStream> output = ArgumentCaptor.forClass(OutputStream.class);
+        verify(client.pods().inNamespace("ns").withName("pod").inContainer("c").redirectingInput()).writingOutput(output.capture());
+        stdin.reset();
+        Proc proc = session.execute("true\n".getBytes(StandardCharsets.UTF_8), new ByteArrayOutputStream());
+        Matcher id = Pattern.compile("printf '[^']*' '([^']+)'").matcher(stdin.toString("UTF-8"));
+        assertTrue(id.find());
+        byte[] marker = ("\u0002" + id.group(1) + ":0\n").getBytes(StandardCharsets.UTF_8);
+        output.getValue().write(marker, 0, marker.length);
+        assertEquals(0, proc.join());
+    }
+
+    private static void write(ContainerExecSession.Demultiplexer demux, String s) throws Exception {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        demux.write(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,52 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.junit.Test;
+
+import hudson.AbortException;
+
+public class ContainerLogStepExecutionTest {
+
+    @Test
+    public void copiesWholeLog() throws Exception {
+        String log = StringUtils.repeat("some log line\n", 10000) + "no newline";
+        StringWriter out = new StringWriter();
+        assertFalse(ContainerLogStepExecution.copy(new StringReader(log), out, null));
+        assertEquals(log, out.toString());
+
+        out = new StringWriter();
+        assertTrue(ContainerLogStepExecution.copy(new StringReader(""), out, null));
+        assertEquals("", out.toString());
+    }
+
+    @Test
+    public void copiesMatchingLines() throws Exception {
+        StringWriter out = new StringWriter();
+        assertTrue(ContainerLogStepExecution.copy(new StringReader("INFO started\nERROR failed\nINFO done\nERROR again"), out,
+                Pattern.compile("^ERROR")));
+        assertEquals("ERROR failed\nERROR again\n", out.toString());
+    }
+
+    @Test
+    public void fileRequiresWorkspace() throws Exception {
+        ContainerLogStep step = new ContainerLogStep("busybox");
+        step.setFile("busybox.log.gz");
+        try {
+            new ContainerLogStepExecution(step, mock(StepContext.class)).run();
+            fail("containerLog with file outside of a node block should abort");
+        } catch (AbortException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("workspace"));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+
+/**
+ * Throughput of the streams of the exec path, writing {@link #size} bytes per operation: the masked script sent to
+ * the shell, and the output teed back through {@link ContainerExecDecorator.ToggleOutputStream}. MB/s is the number
+ * of operations per second times {@link #size}.
+ * <p>
+ * {@code byteByByte} writes one byte at a time, as {@code FilterOutputStream} did for arrays before these streams
+ * handled them.
+ */
+@JmhBenchmark
+public class MaskOutputStreamBenchmark {
+
+    @State(Scope.Thread)
+    public static class Payload {
+
+        @Param({"1048576", "8388608"})
+        public int size;
+
+        @Param({"true", "false"})
+        public boolean byteByByte;
+
+        byte[] script;
+        byte[] output;
+        boolean[] masks;
+
+        @Setup
+        public void setUp() {
+            // a command with a few masked arguments followed by a long script
+            String command = "\"sh\" \"-c\" \"secret\" \"last\" ";
+            masks = new boolean[] {false, false, true, false};
+            StringBuilder sb = new StringBuilder(command);
+            while (sb.length() < size) {
+                sb.append("echo 'building module ").append(sb.length()).append("'\n");
+            }
+            script = Arrays.copyOf(sb.toString().getBytes(StandardCharsets.UTF_8), size);
+            output = Arrays.copyOf(sb.substring(command.length()).getBytes(StandardCharsets.UTF_8), size);
+        }
+
+        void write(OutputStream out, byte[] bytes) throws IOException {
+            if (byteByByte) {
+                for (byte b : bytes) {
+                    out.write(b);
+                }
+            } else {
+                // the exec streams are written in buffers of this size
+                for (int off = 0; off < bytes.length; off += 8192) {
+                    out.write(bytes, off, Math.min(8192, bytes.length - off));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public long maskScript(Payload payload) throws IOException {
+        CountingOutputStream stdin = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+        OutputStream tee = new TeeOutputStream(stdin, NullOutputStream.NULL_OUTPUT_STREAM);
+        payload.write(new ContainerExecDecorator.MaskOutputStream(tee, payload.masks), payload.script);
+        return stdin.getByteCount();
+    }
+
+    @Benchmark
+    public long teeOutput(Payload payload) throws IOException {
+        CountingOutputStream log = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+        ContainerExecDecorator.ToggleOutputStream toggle = new ContainerExecDecorator.ToggleOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+        payload.write(new TeeOutputStream(toggle, log), payload.output);
+        return log.getByteCount();
+    }
+}
@@ -0,0 +1,61 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class MaskOutputStreamTest {
+
+    private static final String COMMAND = "\"sh\" \"-c\" \"echo secret\" \"last\"";
+
+    @Test
+    public void bulkWritesMaskLikeSingleByteWrites() throws IOException {
+        boolean[][] allMasks = {null, {}, {false, true}, {true, false, true, false, true}, {false, false, true, true, true, true}};
+        for (boolean[] masks : allMasks) {
+            String expected = byteByByte(masks);
+            for (int chunk = 1; chunk <= COMMAND.length(); chunk++) {
+                assertEquals("chunks of " + chunk, expected, inChunks(masks, chunk));
+            }
+        }
+    }
+
+    @Test
+    public void masksFragments() throws IOException {
+        assertEquals("\"sh\" \"-c\" ******** secret\" ********", byteByByte(new boolean[] {false, false, true, false, true}));
+    }
+
+    @Test
+    public void toggleDropsBulkWritesWhenDisabled() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ContainerExecDecorator.ToggleOutputStream toggle = new ContainerExecDecorator.ToggleOutputStream(out);
+        toggle.write("before ".getBytes(StandardCharsets.UTF_8));
+        toggle.disable();
+        toggle.write("hidden".getBytes(StandardCharsets.UTF_8));
+        toggle.enable();
+        toggle.write("after".getBytes(StandardCharsets.UTF_8));
+        assertEquals("before after", out.toString("UTF-8"));
+    }
+
+    private static String byteByByte(boolean[] masks) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ContainerExecDecorator.MaskOutputStream masked = new ContainerExecDecorator.MaskOutputStream(out, masks);
+        for (byte b : COMMAND.getBytes(StandardCharsets.UTF_8)) {
+            masked.write(b);
+        }
+        return out.toString("UTF-8");
+    }
+
+    private static String inChunks(boolean[] masks, int chunk) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ContainerExecDecorator.MaskOutputStream masked = new ContainerExecDecorator.MaskOutputStream(out, masks);
+        byte[] bytes = COMMAND.getBytes(StandardCharsets.UTF_8);
+        for (int off = 0; off < bytes.length; off += chunk) {
+            masked.write(bytes, off, Math.min(chunk, bytes.length - off));
+        }
+        return out.toString("UTF-8");
+    }
+}
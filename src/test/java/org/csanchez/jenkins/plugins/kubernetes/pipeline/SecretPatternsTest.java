@@ -0,0 +1,74 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SecretPatternsTest {
+
+    @Test
+    public void masksAllSecrets() throws IOException {
+        SecretPatterns patterns = SecretPatterns.compile(Arrays.asList("s3cr3t", "hunter2", "", "p\u00e4ssw\u00f6rd"));
+        assertEquals("user=bob password=******** token=********\n",
+                mask(patterns, "user=bob password=hunter2 token=s3cr3t\n"));
+        assertEquals("******** and ********", mask(patterns, "p\u00e4ssw\u00f6rd and p\u00e4ssw\u00f6rd"));
+        assertEquals("nothing to hide", mask(patterns, "nothing to hide"));
+    }
+
+    @Test
+    public void overlappingSecretsAreMaskedOnce() throws IOException {
+        SecretPatterns patterns = SecretPatterns.compile(Arrays.asList("abc", "bcd", "xy", "axyzb"));
+        assertEquals("-********-", mask(patterns, "-abcd-"));
+        assertEquals("-********-", mask(patterns, "-axyzb-"));
+        // adjacent secrets are masked separately
+        assertEquals("****************", mask(patterns, "abcabc"));
+    }
+
+    @Test
+    public void sameAsReplaceForDistinctSecrets() throws IOException {
+        Random random = new Random(42);
+        List<String> secrets = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            // digits only, so that secrets cannot overlap with each other or with the separators
+            secrets.add("<" + Math.abs(random.nextLong()) + ">");
+        }
+        SecretPatterns patterns = SecretPatterns.compile(secrets);
+        SecretPatterns.Matcher matcher = patterns.matcher();
+        for (int line = 0; line < 200; line++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 20; i++) {
+                sb.append(random.nextBoolean() ? secrets.get(random.nextInt(secrets.size())) : "<" + random.nextInt() + "> ");
+            }
+            String s = sb.toString();
+            String expected = s;
+            for (String secret : secrets) {
+                expected = expected.replace(secret, "********");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            matcher.mask(bytes, bytes.length, out);
+            assertEquals(expected, out.toString("UTF-8"));
+        }
+    }
+
+    @Test
+    public void noSecrets() throws IOException {
+        assertEquals("plain", mask(SecretPatterns.compile(Collections.emptyList()), "plain"));
+    }
+
+    private static String mask(SecretPatterns patterns, String line) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        patterns.matcher().mask(bytes, bytes.length, out);
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,88 @@
+package org.csanchez.jenkins.plugins.kubernetes.pipeline;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesComputer;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlave;
+import org.junit.Test;
+
+import hudson.remoting.VirtualChannel;
+
+public class SecretsMaskerTest {
+
+    @Test
+    public void concurrentDiscoveryLooksUpSecretsOnce() throws Exception {
+        KubernetesComputer c = onlineComputer();
+        int threads = 16;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<CompletableFuture<Optional<SecretsMasker>>>> discoveries = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                discoveries.add(executor.submit(() -> {
+                    barrier.await(10, TimeUnit.SECONDS);
+                    return SecretsMasker.Factory.discover(c);
+                }));
+            }
+            CompletableFuture<Optional<SecretsMasker>> first = discoveries.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<CompletableFuture<Optional<SecretsMasker>>> discovery : discoveries) {
+                assertSame(first, discovery.get(10, TimeUnit.SECONDS));
+            }
+            assertFalse("no secrets without a node", first.get(10, TimeUnit.SECONDS).isPresent());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertSame("secrets are cached", SecretsMasker.Factory.discover(c), SecretsMasker.Factory.discover(c));
+        verify(c, times(1)).getNode();
+    }
+
+    @Test
+    public void discoveryCompletingOfflineIsNotCached() throws Exception {
+        KubernetesComputer c = mock(KubernetesComputer.class);
+        SecretsMasker.Factory.discover(c).get(10, TimeUnit.SECONDS);
+        SecretsMasker.Factory.discover(c).get(10, TimeUnit.SECONDS);
+        verify(c, times(2)).getNode();
+    }
+
+    @Test
+    public void secretsAreForgottenOffline() throws Exception {
+        KubernetesComputer c = onlineComputer();
+        SecretsMasker.Factory.discover(c).get(10, TimeUnit.SECONDS);
+        new SecretsMasker.ComputerListenerImpl().onOffline(c, null);
+        SecretsMasker.Factory.discover(c).get(10, TimeUnit.SECONDS);
+        verify(c, times(2)).getNode();
+    }
+
+    @Test
+    public void secretsAreForgottenOnceNodeIsRemoved() throws Exception {
+        KubernetesComputer c = onlineComputer();
+        when(c.getName()).thenReturn("agent");
+        SecretsMasker.Factory.discover(c).get(10, TimeUnit.SECONDS);
+        KubernetesSlave node = mock(KubernetesSlave.class);
+        when(node.getNodeName()).thenReturn("agent");
+        new SecretsMasker.NodeListenerImpl().onDeleted(node);
+        SecretsMasker.Factory.discover(c).get(10, TimeUnit.SECONDS);
+        verify(c, times(2)).getNode();
+    }
+
+    private static KubernetesComputer onlineComputer() {
+        KubernetesComputer c = mock(KubernetesComputer.class);
+        when(c.getChannel()).thenReturn(mock(VirtualChannel.class));
+        return c;
+    }
+}
@@ -0,0 +1,174 @@
+package org.csanchez.jenkins.plugins.kubernetes.pod.retention;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesCloud;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesComputer;
+import org.csanchez.jenkins.plugins.kubernetes.KubernetesSlave;
+import org.csanchez.jenkins.plugins.kubernetes.PodTemplate;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.slaves.JNLPLauncher;
+import hudson.slaves.RetentionStrategy;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.PodListBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+
+public class ReaperTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private KubernetesClient client;
+    @SuppressWarnings("rawtypes")
+    private FilterWatchListDeletable labelled;
+    private KubernetesCloud cloud;
+    private PodTemplate template;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        client = mock(KubernetesClient.class, RETURNS_DEEP_STUBS);
+        labelled = mock(FilterWatchListDeletable.class);
+        when(client.pods().inNamespace("ns").withLabels(anyMap())).thenReturn(labelled);
+        when(labelled.watch(nullable(String.class), any(Watcher.class))).thenReturn(mock(Watch.class));
+        cloud = new KubernetesCloud("reaperTest") {
+            @Override
+            public KubernetesClient connect() {
+                return client;
+            }
+        };
+        j.jenkins.clouds.add(cloud);
+        template = new PodTemplate();
+        template.setName("test");
+        template.setLabel("test");
+        cloud.addTemplate(template);
+    }
+
+    @Test
+    public void watchIsResumedFromLastVersion() {
+        Reaper reaper = new Reaper();
+        Reaper.CloudPodWatcher watcher = reaper.watch(cloud.name, "ns");
+        verify(labelled).watch((String) isNull(), eq(watcher));
+
+        watcher.eventReceived(Watcher.Action.MODIFIED, pod("other", "42"));
+        watcher.onClose(new KubernetesClientException("closed"));
+
+        verify(labelled, timeout(5000)).watch(eq("42"), eq(watcher));
+    }
+
+    @Test
+    public void expiredVersionListsPodsAgain() throws Exception {
+        KubernetesSlave alive = agent("alive");
+        KubernetesSlave gone = agent("gone");
+        KubernetesSlave launching = agent("launching");
+        ((KubernetesComputer) launching.toComputer()).setLaunching(true);
+        when(labelled.list(anyInt(), nullable(String.class)))
+                .thenReturn(new PodListBuilder()
+                        .withNewMetadata().withResourceVersion("100").endMetadata()
+                        .withItems(pod("alive", "99"))
+                        .build());
+        when(client.pods().inNamespace("ns").withName(anyString()).get()).thenReturn(null);
+
+        Reaper reaper = new Reaper();
+        Reaper.CloudPodWatcher watcher = reaper.watch(cloud.name, "ns");
+        watcher.onClose(new KubernetesClientException("too old", HttpURLConnection.HTTP_GONE, null));
+
+        verify(labelled, timeout(5000)).watch(eq("100"), eq(watcher));
+        assertNotNull(j.jenkins.getNode(alive.getNodeName()));
+        assertNull("agent whose pod was deleted is removed", j.jenkins.getNode(gone.getNodeName()));
+        assertNotNull("agent still being launched is kept", j.jenkins.getNode(launching.getNodeName()));
+    }
+
+    @Test
+    public void modificationsAreCoalescedWhileListenerIsBusy() throws Exception {
+        KubernetesSlave agent = agent("busy");
+        RecordingListener listener = j.jenkins.getExtensionList(Reaper.Listener.class).get(RecordingListener.class);
+        assertNotNull(listener);
+
+        Reaper reaper = new Reaper();
+        reaper.eventReceived(Watcher.Action.MODIFIED, pod(agent.getPodName(), "1"));
+        assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+        for (int version = 2; version <= 5; version++) {
+            reaper.eventReceived(Watcher.Action.MODIFIED, pod(agent.getPodName(), String.valueOf(version)));
+        }
+        listener.release.countDown();
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (listener.versions.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Thread.sleep(200);
+        assertEquals("only the latest pending modification is dispatched", 2, listener.versions.size());
+        assertEquals("1", listener.versions.get(0));
+        assertEquals("5", listener.versions.get(1));
+        assertSame(agent, j.jenkins.getNode(agent.getNodeName()));
+    }
+
+    private KubernetesSlave agent(String name) throws Exception {
+        KubernetesSlave agent = KubernetesSlave.builder()
+                .name(name)
+                .podTemplate(template)
+                .cloud(cloud)
+                .computerLauncher(new JNLPLauncher(false))
+                .retentionStrategy(RetentionStrategy.NOOP)
+                .build();
+        agent.setNamespace("ns");
+        j.jenkins.addNode(agent);
+        return agent;
+    }
+
+    private static Pod pod(String name, String resourceVersion) {
+        return new PodBuilder()
+                .withNewMetadata().withName(name).withNamespace("ns").withResourceVersion(resourceVersion).endMetadata()
+                .withNewStatus().withPhase("Running").withContainerStatuses(Collections.emptyList()).endStatus()
+                .build();
+    }
+
+    @TestExtension("modificationsAreCoalescedWhileListenerIsBusy")
+    public static class RecordingListener implements Reaper.Listener {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> versions = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onEvent(@NonNull Watcher.Action action, @NonNull KubernetesSlave node, @NonNull Pod pod) throws InterruptedException {
+            versions.add(pod.getMetadata().getResourceVersion());
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+        }
+    }
+}